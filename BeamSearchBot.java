@@ -0,0 +1,390 @@
+//**********************************************************************************************************************************
+// BeamSearchBot.java
+//
+// Bot that looks ahead. It places the current Tetromino, the hold Tetromino and the Tetrominoes of the preview one after
+// another and keeps the best BEAM_WIDTH boards of every depth. (Beam search) Score of a board is its BoardEvaluator score and
+// the lines removed on the way. The first placement of the best board of the last depth is played.
+//
+// Placements are the final positions of Reachability, so tucks and spins are searched and every placement could be played.
+// The best one is played with the inputs of its path.
+//
+// Search stops at the end of the preview or when the time budget of the move is used. Boards of a depth are expanded on all
+// cores by fork/join tasks that are created once. Every task has its own placement buffers and the beams are preallocated,
+// so a move does not create objects.
+// Press B in the game to let it play. Without window: java -Dtetris.preview=5 BeamSearchBot [game mode] [games] [beam width]
+//**********************************************************************************************************************************
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class BeamSearchBot extends Bot {
+
+    static final int BEAM_WIDTH = 32;   //Boards kept in every depth
+    static final long TIME_BUDGET_NANOS = 8_000_000;   //Search time of a move. Less than a frame, so the game loop keeps its pace
+    static final int MAX_DEPTH = Tetris.MAX_PREVIEW + 1;   //Current Tetromino and the preview
+    static final int TOP_ROWS = 5;   //Boards that have a block in these rows are game over
+
+    final int beamWidth;
+    final long timeBudgetNanos;
+    final Expander[] expanders;   //One for each thread. All of them are run for every depth, the ones without boards return at once
+    final Reachability reachability = new Reachability();   //Path of the played placement
+    final byte[] path = new byte[Reachability.MAX_PATH];
+    int bestY;
+
+    //Boards of the current depth. Board n is boards[n*HEIGHT] to boards[n*HEIGHT + HEIGHT - 1]
+    int beamSize = 0;
+    int[] beamBoards;
+    final double[] beamScores;
+    final double[] beamRewards;   //Score of the lines removed before the last placement
+    final int[] beamHolds;   //Shape id of the hold Tetromino. -1 if there is none
+    final int[] beamQueues;   //Index of the next Tetromino in pieces
+    final int[] beamActions;   //First placement of the board (hold, rotation, x and y)
+    int[] nextBoards;   //Boards of the next depth are written here, then the arrays are swapped
+
+    //Tetrominoes of the search. pieces[0] is the current Tetromino, others are the preview
+    final int[] pieces = new int[MAX_DEPTH];
+    int pieceCount = 0;
+    boolean rootHold;   //Hold could be used for the current Tetromino
+    boolean modeHold;   //Hold could be used for the next Tetrominoes
+    boolean bestHold;   //Best first placement holds the current Tetromino first
+    int searchedDepth = 0;   //Depth reached by the last search
+
+    public BeamSearchBot(){
+        this(DEFAULT_WEIGHTS, BEAM_WIDTH, TIME_BUDGET_NANOS);
+    }
+
+    public BeamSearchBot(double[] weights, int beamWidth, long timeBudgetNanos) {
+        super(weights);
+        this.beamWidth = beamWidth;
+        this.timeBudgetNanos = timeBudgetNanos;
+
+        beamBoards = new int[beamWidth * HEIGHT];
+        nextBoards = new int[beamWidth * HEIGHT];
+        beamScores = new double[beamWidth];
+        beamRewards = new double[beamWidth];
+        beamHolds = new int[beamWidth];
+        beamQueues = new int[beamWidth];
+        beamActions = new int[beamWidth];
+
+        expanders = new Expander[Math.max(1, Math.min(beamWidth, Runtime.getRuntime().availableProcessors()))];
+        for (int i = 0; i < expanders.length; i++)
+            expanders[i] = new Expander();
+    }
+
+    //Expands A Range Of The Beam And Keeps Its Best beamWidth Children. Each Thread Uses Its Own Expander
+    class Expander extends RecursiveAction {
+        final Bot placer = new Bot(weights);   //Placement and evaluation buffers
+        final Reachability reachability = new Reachability();
+        final int[] placementYs = new int[MAX_PLACEMENTS];
+        final int[] board = new int[HEIGHT];
+        int from, to;   //Boards of the beam
+        int depth;
+
+        //Best children. Same layout as the beam
+        int size = 0;
+        int worst = 0;   //Index of the child with the lowest score
+        final int[] boards = new int[beamWidth * HEIGHT];
+        final double[] scores = new double[beamWidth];
+        final double[] rewards = new double[beamWidth];
+        final int[] holds = new int[beamWidth];
+        final int[] queues = new int[beamWidth];
+        final int[] actions = new int[beamWidth];
+
+        @Override
+        protected void compute() {
+            size = 0;
+            for (int n = from; n < to; n++)
+                expand(n);
+        }
+
+        //Places The Next Tetromino Of The Board, Or The Hold Tetromino
+        void expand(int n){
+            System.arraycopy(beamBoards, n * HEIGHT, board, 0, HEIGHT);
+            int queue = beamQueues[n];
+            int hold = beamHolds[n];
+            int current = pieces[queue];
+
+            expand(n, current, hold, queue + 1, false);
+            if (depth == 0 ? !rootHold : !modeHold)
+                return;
+
+            //Holding with an empty hold plays the Tetromino after the current one
+            if (hold == -1) {
+                if (queue + 1 < pieceCount)
+                    expand(n, pieces[queue + 1], current, queue + 2, true);
+            } else if (hold != current)
+                expand(n, hold, current, queue + 1, true);
+        }
+
+        //Places The Shape Into Every Reachable Position Of The Board And Keeps The Children That Are Better Than The Worst One
+        void expand(int n, int shapeId, int hold, int queue, boolean holdUsed){
+            Tetris.PieceShape shape = Tetris.SHAPES[shapeId];
+            int poses = reachability.search(board, shape, true);   //Hard drop only makes the paths shorter, positions are the same
+
+            //Placements are evaluated MAX_PLACEMENTS at a time (Tucks and spins could make more)
+            for (int first = 0; first < poses; first += MAX_PLACEMENTS) {
+                int count = Math.min(MAX_PLACEMENTS, poses - first);
+                for (int p = 0; p < count; p++) {
+                    int pose = first + p;
+                    placer.place(board, shape, reachability.poseRotation[pose], reachability.poseX[pose], reachability.poseY[pose], p);
+                    placer.placementRotations[p] = reachability.poseRotation[pose];
+                    placer.placementXs[p] = reachability.poseX[pose];
+                    placementYs[p] = reachability.poseY[pose];
+                }
+                keepBest(n, count, hold, queue, holdUsed);
+            }
+        }
+
+        //Evaluates The Placements And Keeps The Ones That Are Better Than The Worst Child
+        void keepBest(int n, int count, int hold, int queue, boolean holdUsed){
+            placer.evaluator.evaluate(placer.placements, MAX_PLACEMENTS, count, placer.placementLines, weights, placer.features, placer.scores);
+            for (int p = 0; p < count; p++) {
+                if (toppedOut(p))
+                    continue;
+
+                double score = placer.scores[p] + beamRewards[n];
+                int slot;
+                if (size < beamWidth)
+                    slot = size++;
+                else if (score > scores[worst])
+                    slot = worst;
+                else
+                    continue;
+
+                for (int row = 0; row < HEIGHT; row++)
+                    boards[slot * HEIGHT + row] = placer.placements[row * MAX_PLACEMENTS + p];
+                scores[slot] = score;
+                rewards[slot] = beamRewards[n] + weights[BoardEvaluator.LINES] * placer.placementLines[p];
+                holds[slot] = hold;
+                queues[slot] = queue;
+                actions[slot] = depth == 0 ? encodeAction(holdUsed, placer.placementRotations[p], placer.placementXs[p], placementYs[p]) : beamActions[n];
+
+                if (size == beamWidth) {
+                    worst = 0;
+                    for (int i = 1; i < size; i++) {
+                        if (scores[i] < scores[worst])
+                            worst = i;
+                    }
+                }
+            }
+        }
+
+        //Checks If The Placement Left A Block In The Top Rows
+        boolean toppedOut(int p){
+            for (int row = 0; row < TOP_ROWS; row++) {
+                if (placer.placements[row * MAX_PLACEMENTS + p] != 0)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    //First Placement Of A Board. x is from -3 to 9
+    static int encodeAction(boolean hold, int rotation, int x, int y){
+        return (((hold ? 1 : 0) * 4 + rotation) * HEIGHT + y) * 16 + x + 3;
+    }
+
+    //Reads The Game, Searches Without Locking It And Plays The Best Placement If The Tetromino Is Still The Same
+    @Override
+    public void play(Tetris game){
+        int piece;
+        synchronized (game) {
+            Tetris.Tetromino tetromino = game.currentTetromino;
+            if (game.gameOver || game.gamePaused || !tetromino.spawned || game.getPieceCount() == decidedPiece)
+                return;
+            piece = game.getPieceCount();
+            decidedPiece = piece;
+
+            readBoard(game, board);
+            pieceCount = 0;
+            pieces[pieceCount++] = tetromino.shape.id;
+            for (int i = 0; i < game.previewCount && game.preview(i) != null; i++)
+                pieces[pieceCount++] = game.preview(i).id;
+            modeHold = game.getGameMode().hold;
+            rootHold = modeHold && !game.holdUsed;
+            beamHolds[0] = game.holdTetromino == null ? -1 : game.holdTetromino.id;
+        }
+
+        if (!search(board, beamHolds[0]))
+            return;
+
+        synchronized (game) {
+            if (game.gameOver || game.gamePaused || game.getPieceCount() != piece)
+                return;
+            if (bestHold) {
+                game.hold();
+                decidedPiece = game.getPieceCount();
+            }
+            moveAndDrop(game);
+        }
+    }
+
+    //Plays The Path Of The Best Placement From The Current Position Of The Tetromino. Called while the game is locked
+    @Override
+    void moveAndDrop(Tetris game){
+        Tetris.Tetromino tetromino = game.currentTetromino;
+        boolean hardDrop = game.getGameMode().hardDrop;
+        readBoard(game, board);
+        int pose = reachability.search(board, tetromino.shape, tetromino.x, tetromino.y, tetromino.rotation, hardDrop) == 0
+                ? -1 : reachability.findPose(bestX, bestY, bestRotation);
+        if (pose == -1) {
+            super.moveAndDrop(game);   //Tetromino fell below the path of the search
+            return;
+        }
+
+        int length = reachability.path(pose, path);
+        for (int i = 0; i < length; i++)
+            Reachability.perform(game, path[i]);
+        if (length == 0 || path[length - 1] != Reachability.HARD_DROP) {
+            if (hardDrop)
+                game.hardDrop();
+            else
+                game.setSoftDropping(true);
+        }
+    }
+
+    //Searches The Best First Placement Of pieces. Sets bestHold, bestRotation, bestX And bestY. Returns false If Nothing Fits
+    public boolean search(int[] board, int hold){
+        long deadline = System.nanoTime() + timeBudgetNanos;
+
+        System.arraycopy(board, 0, beamBoards, 0, HEIGHT);
+        beamSize = 1;
+        beamScores[0] = 0;
+        beamRewards[0] = 0;
+        beamHolds[0] = hold;
+        beamQueues[0] = 0;
+
+        int depth = 0;
+        while (depth < pieceCount) {
+            if (depth > 0 && System.nanoTime() > deadline)
+                break;
+            if (!expand(depth))
+                break;
+            depth++;
+        }
+        searchedDepth = depth;
+        if (depth == 0)
+            return false;
+
+        int best = 0;
+        for (int n = 1; n < beamSize; n++) {
+            if (beamScores[n] > beamScores[best])
+                best = n;
+        }
+        int action = beamActions[best];
+        bestX = action % 16 - 3;
+        bestY = action / 16 % HEIGHT;
+        bestRotation = action / 16 / HEIGHT % 4;
+        bestHold = action / 16 / HEIGHT / 4 == 1;
+        return true;
+    }
+
+    //Expands Every Board Of The Beam By One Tetromino And Keeps The Best Children. Returns false If No Board Could Be Expanded
+    boolean expand(int depth){
+        //Boards that have no Tetromino left are not expanded
+        int expandable = 0;
+        for (int n = 0; n < beamSize; n++) {
+            if (beamQueues[n] < pieceCount)
+                expandable++;
+        }
+        if (expandable < beamSize)
+            compactBeam();
+        if (beamSize == 0)
+            return false;
+
+        //Splits the beam between the threads. Tasks are reused, so they are reinitialized before they are forked again
+        int threads = Math.min(expanders.length, beamSize);
+        for (int i = 0; i < expanders.length; i++) {
+            Expander expander = expanders[i];
+            expander.reinitialize();
+            expander.from = i < threads ? beamSize * i / threads : 0;
+            expander.to = i < threads ? beamSize * (i + 1) / threads : 0;
+            expander.depth = depth;
+        }
+        if (threads == 1)
+            expanders[0].compute();
+        else
+            ForkJoinTask.invokeAll(expanders);   //Runs the first task in this thread and forks the others into the common pool
+
+        //Next beam is the best beamWidth children of all the threads
+        int size = 0;
+        while (size < beamWidth) {
+            Expander bestExpander = null;
+            int bestChild = -1;
+            for (int i = 0; i < threads; i++) {
+                Expander expander = expanders[i];
+                for (int c = 0; c < expander.size; c++) {
+                    if (expander.scores[c] != Double.NEGATIVE_INFINITY && (bestExpander == null || expander.scores[c] > bestExpander.scores[bestChild])) {
+                        bestExpander = expander;
+                        bestChild = c;
+                    }
+                }
+            }
+            if (bestExpander == null)
+                break;
+
+            System.arraycopy(bestExpander.boards, bestChild * HEIGHT, nextBoards, size * HEIGHT, HEIGHT);
+            beamScores[size] = bestExpander.scores[bestChild];
+            beamRewards[size] = bestExpander.rewards[bestChild];
+            beamHolds[size] = bestExpander.holds[bestChild];
+            beamQueues[size] = bestExpander.queues[bestChild];
+            beamActions[size] = bestExpander.actions[bestChild];
+            bestExpander.scores[bestChild] = Double.NEGATIVE_INFINITY;   //Taken
+            size++;
+        }
+        if (size == 0)
+            return false;
+
+        int[] temp = beamBoards;
+        beamBoards = nextBoards;
+        nextBoards = temp;
+        beamSize = size;
+        return true;
+    }
+
+    //Removes The Boards That Have No Tetromino Left From The Beam
+    void compactBeam(){
+        int size = 0;
+        for (int n = 0; n < beamSize; n++) {
+            if (beamQueues[n] >= pieceCount)
+                continue;
+            System.arraycopy(beamBoards, n * HEIGHT, beamBoards, size * HEIGHT, HEIGHT);
+            beamScores[size] = beamScores[n];
+            beamRewards[size] = beamRewards[n];
+            beamHolds[size] = beamHolds[n];
+            beamQueues[size] = beamQueues[n];
+            beamActions[size] = beamActions[n];
+            size++;
+        }
+        beamSize = size;
+    }
+
+    //Plays Seeded Games With The Greedy Bot And The Beam Search Bot And Prints Their Results
+    public static void main(String[] args){
+        Tetris.GameMode gameMode = Tetris.GameMode.forName(args.length > 0 ? args[0] : Tetris.DEFAULT_GAME_MODE);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int beamWidth = args.length > 2 ? Integer.parseInt(args[2]) : BEAM_WIDTH;
+        int frameLimit = 36000;   //10 minutes of game time
+
+        for (int b = 0; b < 2; b++) {
+            long lines = 0, score = 0, pieces = 0, nanos = 0;
+            for (int i = 0; i < games; i++) {
+                Tetris game = new Tetris(gameMode, i);
+                game.logEvents = false;
+                Bot bot = b == 0 ? new Bot() : new BeamSearchBot(DEFAULT_WEIGHTS, beamWidth, TIME_BUDGET_NANOS);
+
+                for (int frame = 0; frame < frameLimit && !game.gameOver; frame++) {
+                    game.tick();
+                    long start = System.nanoTime();
+                    bot.play(game);
+                    nanos += System.nanoTime() - start;
+                }
+                pieces += game.getPieceCount();
+                lines += game.getLines();
+                score += game.getScore();
+            }
+            System.out.printf("%s: %.1f lines, %d score on average, %.2f ms per move%n", b == 0 ? "Greedy" : "Beam search",
+                    (double) lines / games, score / games, pieces == 0 ? 0 : nanos / 1e6 / pieces);
+        }
+    }
+}
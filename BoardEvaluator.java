@@ -0,0 +1,107 @@
+//**********************************************************************************************************************************
+// BoardEvaluator.java
+//
+// Heuristic features of many boards at once. (Aggregate height, holes, bumpiness, wells and row transitions)
+// A placement search evaluates every placement of a Tetromino together, so the boards are stored row by row across the
+// boards: row r of board b is rows[r * stride + b]. A row is a bit mask, bit x is the block in column x.
+// This is the scalar evaluator. "vector/VectorBoardEvaluator.java" computes the same features of many boards in the lanes of
+// the Vector API. create() uses it when it is compiled and the incubator module is added:
+//
+// javac --add-modules jdk.incubator.vector -d . vector/VectorBoardEvaluator.java
+// java --add-modules jdk.incubator.vector ...
+//**********************************************************************************************************************************
+
+public class BoardEvaluator {
+
+    static final int WIDTH = 10;
+    static final int HEIGHT = 24;
+    static final int FULL_ROW = (1 << WIDTH) - 1;
+
+    //Features. Score of a board is the sum of its features multiplied by the weights
+    static final int AGGREGATE_HEIGHT = 0;   //Sum of the column heights
+    static final int LINES = 1;   //Lines removed by the placement. It is given by the search
+    static final int HOLES = 2;   //Empty cells under a block
+    static final int BUMPINESS = 3;   //Sum of the height differences of the neighbour columns
+    static final int WELLS = 4;   //Sum of the well depths (How much lower a column is than both of its neighbours, walls are high)
+    static final int ROW_TRANSITIONS = 5;   //Empty cells next to a block or a wall in the rows
+    static final int FEATURES = 6;
+
+    final int[] heights = new int[WIDTH];
+
+    //Creates The Fastest Evaluator That Could Be Loaded
+    static BoardEvaluator create(){
+        try {
+            return (BoardEvaluator) Class.forName("VectorBoardEvaluator").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new BoardEvaluator();
+        }
+    }
+
+    //Scores The Boards. lines[b] Is The Lines Removed By The Placement Of Board b. Features Are Written Into The features Array
+    //(features[f * stride + b]), It Must Have FEATURES * stride Elements
+    public void evaluate(int[] rows, int stride, int count, int[] lines, double[] weights, int[] features, double[] scores){
+        features(rows, stride, count, features);
+
+        for (int b = 0; b < count; b++) {
+            features[LINES * stride + b] = lines[b];
+
+            double score = 0;
+            for (int f = 0; f < FEATURES; f++)
+                score += weights[f] * features[f * stride + b];
+            scores[b] = score;
+        }
+    }
+
+    //Computes The Features Of The Boards (Except LINES)
+    public void features(int[] rows, int stride, int count, int[] features){
+        for (int b = 0; b < count; b++)
+            boardFeatures(rows, stride, b, features);
+    }
+
+    //Computes The Features Of One Board
+    void boardFeatures(int[] rows, int stride, int b, int[] features){
+        int above = 0;   //Columns that have a block in this row or above
+        int aggregateHeight = 0;
+        int holes = 0;
+        int rowTransitions = 0;
+
+        for (int row = 0; row < HEIGHT; row++) {
+            int mask = rows[row * stride + b];
+
+            //Column heights. A column gets its height at its first block
+            int tops = mask & ~above;
+            while (tops != 0) {
+                heights[Integer.numberOfTrailingZeros(tops)] = HEIGHT - row;
+                tops &= tops - 1;
+            }
+            above |= mask;
+
+            aggregateHeight += Integer.bitCount(above);
+            holes += Integer.bitCount(above & ~mask);
+
+            //Walls are filled cells on both sides of the row
+            int walled = (mask << 1) | 1 | (1 << (WIDTH + 1));
+            rowTransitions += Integer.bitCount((walled ^ (walled >>> 1)) & ((1 << (WIDTH + 1)) - 1));
+        }
+        for (int column = 0; column < WIDTH; column++) {
+            if ((above & (1 << column)) == 0)
+                heights[column] = 0;
+        }
+
+        int bumpiness = 0;
+        int wells = 0;
+        for (int column = 0; column < WIDTH; column++) {
+            int left = column == 0 ? HEIGHT : heights[column - 1];
+            int right = column == WIDTH - 1 ? HEIGHT : heights[column + 1];
+            wells += Math.max(0, Math.min(left, right) - heights[column]);
+            if (column > 0)
+                bumpiness += Math.abs(heights[column] - heights[column - 1]);
+        }
+
+        features[AGGREGATE_HEIGHT * stride + b] = aggregateHeight;
+        features[HOLES * stride + b] = holes;
+        features[BUMPINESS * stride + b] = bumpiness;
+        features[WELLS * stride + b] = wells;
+        features[ROW_TRANSITIONS * stride + b] = rowTransitions;
+    }
+}
@@ -0,0 +1,146 @@
+//**********************************************************************************************************************************
+// Bot.java
+//
+// Plays Tetris by itself. Every Tetromino is placed where the board gets the best score due to the weights of the features
+// of BoardEvaluator. (Aggregate height, removed lines, holes, bumpiness, wells and row transitions)
+// Every placement of a Tetromino is evaluated together.
+//**********************************************************************************************************************************
+
+public class Bot {
+
+    static final int WIDTH = 10;
+    static final int HEIGHT = 24;
+    static final int FULL_ROW = (1 << WIDTH) - 1;
+
+    static final int MAX_PLACEMENTS = 64;   //4 rotations and 13 positions of the 4x4 box
+
+    //Weights of the features of BoardEvaluator
+    static final double[] DEFAULT_WEIGHTS = {-0.510066, 0.760666, -0.35663, -0.184483, 0, 0};
+
+    final double[] weights;
+    final BoardEvaluator evaluator = BoardEvaluator.create();
+    final int[] board = new int[HEIGHT];   //Placed blocks of the game. Bit x of board[y] is the block in (x,y)
+
+    //Boards after each placement. Row r of placement p is placements[r * MAX_PLACEMENTS + p]
+    final int[] placements = new int[HEIGHT * MAX_PLACEMENTS];
+    final int[] placementLines = new int[MAX_PLACEMENTS];
+    final int[] placementRotations = new int[MAX_PLACEMENTS];
+    final int[] placementXs = new int[MAX_PLACEMENTS];
+    final int[] features = new int[BoardEvaluator.FEATURES * MAX_PLACEMENTS];
+    final double[] scores = new double[MAX_PLACEMENTS];
+    int decidedPiece = -1;   //Piece count of the last Tetromino that is played
+    int bestRotation;
+    int bestX;
+
+    public Bot(){
+        this(DEFAULT_WEIGHTS);
+    }
+
+    public Bot(double[] weights){
+        this.weights = weights;
+    }
+
+    //Moves The Current Tetromino Of The Game To The Best Placement And Drops It. Every Tetromino Is Played Once
+    public void play(Tetris game){
+        synchronized (game) {
+            Tetris.Tetromino tetromino = game.currentTetromino;
+            if (game.gameOver || game.gamePaused || !tetromino.spawned || game.getPieceCount() == decidedPiece)
+                return;
+            decidedPiece = game.getPieceCount();
+
+            readBoard(game, board);
+            if (!choose(board, tetromino.shape))
+                return;
+
+            moveAndDrop(game);
+        }
+    }
+
+    //Rotates And Moves The Current Tetromino To bestRotation And bestX And Drops It. Called while the game is locked
+    void moveAndDrop(Tetris game){
+        Tetris.Tetromino tetromino = game.currentTetromino;
+        for (int i = 0; i < bestRotation; i++)
+            tetromino.rotateRight();
+        while (tetromino.x > bestX && tetromino.moveLeft()) {/* Moving */}
+        while (tetromino.x < bestX && tetromino.moveRight()) {/* Moving */}
+
+        //Modes without hard drop are played with soft drop
+        if (game.getGameMode().hardDrop)
+            game.hardDrop();
+        else
+            game.setSoftDropping(true);
+    }
+
+    //Copies The Placed Blocks Of The Game Into The Board. Rows of the game are the same masks (Bots only play the standard board)
+    static void readBoard(Tetris game, int[] board){
+        for (int y = 0; y < HEIGHT; y++)
+            board[y] = (int) game.rows[y];
+    }
+
+    //Checks If The Shape Fits Into The Given Position (Position of the 4x4 box) Of The Board
+    static boolean fits(int[] board, Tetris.PieceShape shape, int rotation, int x, int y){
+        for (int[] cell : shape.cells[rotation]) {
+            int cellX = x + cell[0];
+            int cellY = y + cell[1];
+            if (cellX < 0 || cellX >= WIDTH || cellY < 0 || cellY >= HEIGHT || (board[cellY] & (1 << cellX)) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    //Finds The Best Rotation And x Coordinate For The Shape. Returns false If It Does Not Fit Anywhere
+    public boolean choose(int[] board, Tetris.PieceShape shape){
+        int count = 0;
+
+        for (int rotation = 0; rotation < shape.cells.length; rotation++) {
+            for (int x = -3; x < WIDTH; x++) {
+                if (!fits(board, shape, rotation, x, Tetris.SPAWN_Y))
+                    continue;
+
+                int y = Tetris.SPAWN_Y;
+                while (fits(board, shape, rotation, x, y + 1))
+                    y++;
+
+                place(board, shape, rotation, x, y, count);
+                placementRotations[count] = rotation;
+                placementXs[count] = x;
+                count++;
+            }
+        }
+        if (count == 0)
+            return false;
+
+        evaluator.evaluate(placements, MAX_PLACEMENTS, count, placementLines, weights, features, scores);
+        int best = 0;
+        for (int p = 1; p < count; p++) {
+            if (scores[p] > scores[best])
+                best = p;
+        }
+        bestRotation = placementRotations[best];
+        bestX = placementXs[best];
+        return true;
+    }
+
+    //Writes The Board After Placing The Shape And Removing The Full Rows Into The Placement p
+    void place(int[] board, Tetris.PieceShape shape, int rotation, int x, int y, int p){
+        int[] placed = placements;
+        for (int row = 0; row < HEIGHT; row++)
+            placed[row * MAX_PLACEMENTS + p] = board[row];
+        for (int[] cell : shape.cells[rotation])
+            placed[(y + cell[1]) * MAX_PLACEMENTS + p] |= 1 << (x + cell[0]);
+
+        //Removes the full rows by moving the other rows down
+        int lines = 0;
+        int to = HEIGHT - 1;
+        for (int from = HEIGHT - 1; from >= 0; from--) {
+            int row = placed[from * MAX_PLACEMENTS + p];
+            if (row == FULL_ROW)
+                lines++;
+            else
+                placed[to-- * MAX_PLACEMENTS + p] = row;
+        }
+        while (to >= 0)
+            placed[to-- * MAX_PLACEMENTS + p] = 0;
+        placementLines[p] = lines;
+    }
+}
@@ -0,0 +1,174 @@
+//**********************************************************************************************************************************
+// FinesseAnalyzer.java
+//
+// Measures how efficiently the player places the Tetrominoes. Key presses (moves and rotations) of every Tetromino are
+// compared with the least presses that reach its final position from the spawn position. Pressing more is a finesse fault.
+// Presses are counted by the game loop when it applies them, so they belong to the Tetromino that they moved.
+// A held move key that moves the Tetromino until it is blocked is one press (DAS). A held key that is released before that is
+// counted as a press for every column it moved. Every rotation is a press. Soft drop and hard drop are not counted.
+//
+// Least presses of every position on an open board are calculated once for every shape. Tetrominoes that are dropped straight
+// down from an empty top use this table, so a lock only costs a table lookup. Other placements (tucks, spins and high boards)
+// search the real board with Reachability. Both use the presses of Reachability, which also knows the held keys.
+//**********************************************************************************************************************************
+
+import java.util.Arrays;
+
+public class FinesseAnalyzer {
+
+    static final int WIDTH = Bot.WIDTH;
+    static final int HEIGHT = Bot.HEIGHT;
+    static final int OPEN_ROWS = Tetris.SPAWN_Y + 4;   //Top rows that must be empty to use the table (Rows of the spawn position)
+
+    //Least presses of each shape, rotation and x coordinate (OPEN_BOARD[shape][rotation * Reachability.X_RANGE + x + 3]) when the
+    //Tetromino is dropped from there on an open board. -1 if it does not fit. Drops are not presses, so it is the same with and
+    //without hard drop
+    static final int[][] OPEN_BOARD = new int[Tetris.SHAPES.length][4 * Reachability.X_RANGE];
+
+    static {
+        Reachability reachability = new Reachability();
+        int[] empty = new int[HEIGHT];
+        for (Tetris.PieceShape shape : Tetris.SHAPES) {
+            reachability.search(empty, shape, true);
+            Arrays.fill(OPEN_BOARD[shape.id], -1);
+
+            for (int rotation = 0; rotation < shape.cells.length; rotation++) {
+                for (int x = -3; x < WIDTH; x++) {
+                    if (!Bot.fits(empty, shape, rotation, x, Tetris.SPAWN_Y))
+                        continue;
+                    int y = Tetris.SPAWN_Y;
+                    while (Bot.fits(empty, shape, rotation, x, y + 1))
+                        y++;
+
+                    int pose = reachability.findPose(x, y, rotation);
+                    if (pose != -1)
+                        OPEN_BOARD[shape.id][rotation * Reachability.X_RANGE + x + 3] = reachability.posePresses[pose];
+                }
+            }
+        }
+    }
+
+    final Reachability reachability = new Reachability();
+    final int[] board = new int[HEIGHT];
+
+    //Presses of the current Tetromino. Only used by the game loop
+    int inputPiece = -1;   //Piece count of the Tetromino that the presses belong to
+    int inputs = 0;
+    byte heldInput = -1;   //Move key that is held (Replay.LEFT or Replay.RIGHT), -1 if there is none
+    int heldMoves = 0;   //Columns moved by the held key
+    boolean heldBlocked = false;   //Held key moved the Tetromino until it is blocked
+
+    //Report of the game
+    int pieces = 0;   //Analyzed Tetrominoes
+    int faults = 0;   //Tetrominoes that are placed with more inputs than needed
+    int extraInputs = 0;
+    int totalInputs = 0;
+    final int[] shapeFaults = new int[Tetris.SHAPES.length];
+
+    //Starts The Report Of A New Game
+    public void reset(){
+        inputPiece = -1;
+        inputs = 0;
+        heldInput = -1;
+        pieces = 0;
+        faults = 0;
+        extraInputs = 0;
+        totalInputs = 0;
+        Arrays.fill(shapeFaults, 0);
+    }
+
+    //Counts A Move Or Rotation That The Game Loop Applied. repeated Is true For The Key Repeat Of A Held Key, moved Is true If
+    //The Tetromino Moved Or Rotated
+    public void inputApplied(Tetris game, byte input, boolean repeated, boolean moved){
+        if (inputPiece != game.getPieceCount()) {
+            inputPiece = game.getPieceCount();
+            inputs = 0;
+            heldInput = -1;
+        }
+
+        if (repeated && input == heldInput) {
+            if (moved)
+                heldMoves++;
+            heldBlocked = !moved || !canMove(game.currentTetromino, input);
+            return;
+        }
+
+        releaseHeldKey();
+        inputs++;
+        if (input == Replay.LEFT || input == Replay.RIGHT) {
+            heldInput = input;
+            heldMoves = moved ? 1 : 0;
+            heldBlocked = !moved || !canMove(game.currentTetromino, input);
+        }
+    }
+
+    //Counts The Held Key When It Is Not Used Any More. It was tapping if it did not move the Tetromino until it is blocked
+    void releaseHeldKey(){
+        if (heldInput != -1 && !heldBlocked && heldMoves > 1)
+            inputs += heldMoves - 1;
+        heldInput = -1;
+    }
+
+    static boolean canMove(Tetris.Tetromino tetromino, byte input){
+        return tetromino.fits(tetromino.x + (input == Replay.LEFT ? -1 : 1), tetromino.y, tetromino.rotation);
+    }
+
+    //Compares The Presses Of The Current Tetromino With The Least Presses. Called before the Tetromino is placed into the grid
+    public void pieceLocked(Tetris game){
+        Tetris.Tetromino tetromino = game.currentTetromino;
+        if (inputPiece == game.getPieceCount())
+            releaseHeldKey();
+        int pressed = inputPiece == game.getPieceCount() ? inputs : 0;
+        inputPiece = -1;
+        inputs = 0;
+
+        Bot.readBoard(game, board);
+        int least = leastInputs(tetromino.shape, tetromino.x, tetromino.y, tetromino.rotation, game.getGameMode().hardDrop);
+        if (least < 0)
+            return;
+
+        pieces++;
+        totalInputs += pressed;
+        if (pressed > least) {
+            faults++;
+            extraInputs += pressed - least;
+            shapeFaults[tetromino.shape.id]++;
+        }
+    }
+
+    //Returns The Least Presses (Moves And Rotations) That Place The Shape Into The Position Of board, Or -1 If It Could Not Be Reached
+    int leastInputs(Tetris.PieceShape shape, int x, int y, int rotation, boolean hardDrop){
+        if (droppedFromTop(shape, x, y, rotation))
+            return OPEN_BOARD[shape.id][rotation * Reachability.X_RANGE + x + 3];
+
+        if (reachability.search(board, shape, hardDrop) == 0)
+            return -1;
+        int pose = reachability.findPose(x, y, rotation);
+        return pose == -1 ? -1 : reachability.posePresses[pose];
+    }
+
+    //Checks If The Top Rows Are Empty And The Tetromino Could Fall Straight Into Its Position From The Spawn Row
+    boolean droppedFromTop(Tetris.PieceShape shape, int x, int y, int rotation){
+        for (int row = 0; row < OPEN_ROWS; row++) {
+            if (board[row] != 0)
+                return false;
+        }
+        for (int row = Tetris.SPAWN_Y; row < y; row++) {
+            if (!Bot.fits(board, shape, rotation, x, row))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder report = new StringBuilder();
+        report.append("Finesse: ").append(faults).append(" faults in ").append(pieces).append(" pieces, ")
+                .append(extraInputs).append(" extra presses of ").append(totalInputs);
+        for (Tetris.PieceShape shape : Tetris.SHAPES) {
+            if (shapeFaults[shape.id] > 0)
+                report.append(", ").append(shape.type).append(": ").append(shapeFaults[shape.id]);
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,94 @@
+//**********************************************************************************************************************************
+// GameEvents.java
+//
+// Java Flight Recorder events of the game. They show where the frame time goes when the game stutters: spawns, locks, line
+// clears, holds, game overs and paints. Spawn event starts when the previous Tetromino is locked, so its duration is the time
+// from a lock to the next spawn (entry delay and line clear delay included). Paint event lasts as long as the paint.
+//
+// Events are disabled by default and cost almost nothing then. They are recorded by enabling them in the recording settings:
+//     java -XX:StartFlightRecording:filename=tetris.jfr,settings=tetris.jfc Tetris
+// where tetris.jfc is a copy of default.jfc with <event name="tetris.Spawn"><setting name="enabled">true</setting></event>
+// (and the same for the other events), or with "jfr configure" on Java 17+.
+//**********************************************************************************************************************************
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+public class GameEvents {
+
+    @Name("tetris.Spawn")
+    @Label("Spawn")
+    @Category("Tetris")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Spawn extends Event {
+        @Label("Shape")
+        char shape;
+        @Label("Piece")
+        int piece;   //Tetrominoes spawned since the game started
+    }
+
+    @Name("tetris.Lock")
+    @Label("Lock")
+    @Category("Tetris")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Lock extends Event {
+        @Label("Shape")
+        char shape;
+        @Label("X")
+        byte x;
+        @Label("Y")
+        byte y;
+        @Label("Rotation")
+        byte rotation;
+    }
+
+    @Name("tetris.LineClear")
+    @Label("Line Clear")
+    @Category("Tetris")
+    @Enabled(false)
+    @StackTrace(false)
+    static class LineClear extends Event {
+        @Label("Lines")
+        byte lines;   //Lines removed by the lock
+        @Label("Score")
+        int score;   //Score gained by them
+    }
+
+    @Name("tetris.Hold")
+    @Label("Hold")
+    @Category("Tetris")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Hold extends Event {
+        @Label("Held Shape")
+        char shape;
+    }
+
+    @Name("tetris.GameOver")
+    @Label("Game Over")
+    @Category("Tetris")
+    @Enabled(false)
+    @StackTrace(false)
+    static class GameOver extends Event {
+        @Label("Score")
+        int score;
+        @Label("Lines")
+        int lines;
+        @Label("Frames")
+        int frames;
+    }
+
+    @Name("tetris.Paint")
+    @Label("Paint")
+    @Category("Tetris")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Paint extends Event {
+    }
+}
@@ -0,0 +1,251 @@
+//**********************************************************************************************************************************
+// GeneticTuner.java
+//
+// Evolves the weights of the bot (the features of BoardEvaluator) with a genetic algorithm. Every candidate of a generation
+// plays the same seeded games, so the candidates are compared on the same Tetrominoes. Generations get new seeds.
+// Games are played without window and without frames: the bot places each Tetromino directly into a VecEnv game, which has the
+// same rules, Tetrominoes and scores as Tetris. Candidates are evaluated on all cores at the same time.
+//
+// Fitness of a candidate is its average lines or score. A game stops when it reaches MAX_PIECES Tetrominoes, because good
+// weights could play forever. The population is written into the checkpoint file after every generation and the tuner
+// continues from it when it is started again.
+//
+// Usage: java GeneticTuner [game mode] [lines|score] [generations] [population] [games per candidate] [checkpoint file]
+//**********************************************************************************************************************************
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GeneticTuner {
+
+    static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".tetris", "tuner");
+    static final int MAX_PIECES = 2000;   //Tetrominoes of a game
+    static final int TOURNAMENT_SIZE = 4;   //Parents are the best of that many random candidates
+    static final double ELITE_RATE = 0.1;   //Best candidates that are kept as they are
+    static final double MUTATION_RATE = 0.2;   //Chance of a weight to be mutated
+    static final double MUTATION_SIZE = 0.2;   //Maximum change of a mutated weight
+
+    final Tetris.GameMode gameMode;
+    final boolean scoreFitness;   //Fitness is the average score. Otherwise the average lines
+    final int gamesPerCandidate;
+    final Path checkpoint;
+
+    SplittableRandom random;
+    long seed;
+    int generation = 0;
+    List<Candidate> population = new ArrayList<>();
+
+    //Weights Of A Bot And Its Fitness In The Last Generation
+    static class Candidate {
+        final double[] weights;
+        double fitness = 0;
+
+        Candidate(double[] weights) {
+            this.weights = weights;
+        }
+    }
+
+    public GeneticTuner(Tetris.GameMode gameMode, boolean scoreFitness, int gamesPerCandidate, Path checkpoint) {
+        this.gameMode = gameMode;
+        this.scoreFitness = scoreFitness;
+        this.gamesPerCandidate = gamesPerCandidate;
+        this.checkpoint = checkpoint;
+    }
+
+    //Creates Random Candidates And The Default Weights Of The Bot
+    void createPopulation(int size, long seed){
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+        population.clear();
+        population.add(new Candidate(normalize(Bot.DEFAULT_WEIGHTS.clone())));
+        while (population.size() < size) {
+            double[] weights = new double[BoardEvaluator.FEATURES];
+            for (int i = 0; i < weights.length; i++)
+                weights[i] = 2 * random.nextDouble() - 1;
+            population.add(new Candidate(normalize(weights)));
+        }
+    }
+
+    //Scales The Weights To Unit Length. Only the direction of the weights changes the placements of the bot
+    static double[] normalize(double[] weights){
+        double length = 0;
+        for (double weight : weights)
+            length += weight * weight;
+        length = Math.sqrt(length);
+        if (length > 0) {
+            for (int i = 0; i < weights.length; i++)
+                weights[i] /= length;
+        }
+        return weights;
+    }
+
+    //Plays The Games Of A Candidate And Returns Its Average Lines Or Score
+    double evaluate(Candidate candidate, long gameSeed){
+        VecEnv env = new VecEnv(gamesPerCandidate, gameMode);
+        Bot bot = new Bot(candidate.weights);
+        env.reset(gameSeed, new int[gamesPerCandidate * VecEnv.OBSERVATION_SIZE]);
+
+        long total = 0;
+        for (int i = 0; i < gamesPerCandidate; i++) {
+            int base = i * VecEnv.HEIGHT;
+            while (env.steps[i] < MAX_PIECES) {
+                System.arraycopy(env.rows, base, bot.board, 0, VecEnv.HEIGHT);
+                int shape = env.pieces[i];
+                if (!bot.choose(bot.board, Tetris.SHAPES[shape]))
+                    break;
+
+                //Action is the rotation and the column of the leftmost block
+                int action = bot.bestRotation * VecEnv.WIDTH + bot.bestX + VecEnv.PIECE_LEFT[shape * 4 + bot.bestRotation];
+                if (!env.place(i, action))
+                    break;
+            }
+            total += scoreFitness ? env.scores[i] : env.lines[i];
+        }
+        return (double) total / gamesPerCandidate;
+    }
+
+    //Evaluates Every Candidate At The Same Time. Every candidate plays the same games
+    void evaluatePopulation(ExecutorService executor) throws InterruptedException, ExecutionException {
+        long gameSeed = seed + (long) generation * gamesPerCandidate;
+        List<Callable<Double>> tasks = new ArrayList<>();
+        for (Candidate candidate : population)
+            tasks.add(() -> evaluate(candidate, gameSeed));
+
+        List<Future<Double>> results = executor.invokeAll(tasks);
+        for (int i = 0; i < population.size(); i++)
+            population.get(i).fitness = results.get(i).get();
+        population.sort(Comparator.comparingDouble((Candidate c) -> c.fitness).reversed());
+    }
+
+    //Creates The Next Generation From The Evaluated Population. Best candidates are kept, others are children of two parents
+    void breed(){
+        int eliteCount = Math.max(1, (int) (population.size() * ELITE_RATE));
+        List<Candidate> next = new ArrayList<>(population.subList(0, eliteCount));
+
+        while (next.size() < population.size()) {
+            Candidate first = select();
+            Candidate second = select();
+
+            //Child is the average of the parents weighted by their fitness
+            double firstShare = first.fitness + second.fitness > 0 ? first.fitness / (first.fitness + second.fitness) : 0.5;
+            double[] weights = new double[BoardEvaluator.FEATURES];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = firstShare * first.weights[i] + (1 - firstShare) * second.weights[i];
+                if (random.nextDouble() < MUTATION_RATE)
+                    weights[i] += MUTATION_SIZE * (2 * random.nextDouble() - 1);
+            }
+            next.add(new Candidate(normalize(weights)));
+        }
+        population = next;
+        generation++;
+    }
+
+    //Returns The Best Of TOURNAMENT_SIZE Random Candidates
+    Candidate select(){
+        Candidate best = null;
+        for (int i = 0; i < TOURNAMENT_SIZE; i++) {
+            Candidate candidate = population.get(random.nextInt(population.size()));
+            if (best == null || candidate.fitness > best.fitness)
+                best = candidate;
+        }
+        return best;
+    }
+
+    //Writes The Generation, Seeds And Candidates Into The Checkpoint File. The old file is replaced when the new one is written
+    void saveCheckpoint() throws IOException {
+        Files.createDirectories(checkpoint.toAbsolutePath().getParent());
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write("generation " + generation + "\n");
+            writer.write("seed " + seed + "\n");
+            writer.write("random " + random.nextLong() + "\n");
+            for (Candidate candidate : population) {
+                StringBuilder line = new StringBuilder().append(candidate.fitness);
+                for (double weight : candidate.weights)
+                    line.append(' ').append(weight);
+                writer.write(line.append('\n').toString());
+            }
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //Continues From The Checkpoint File. Returns false If There Is No Checkpoint
+    boolean loadCheckpoint() throws IOException {
+        if (!Files.exists(checkpoint))
+            return false;
+
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        generation = Integer.parseInt(lines.get(0).split(" ")[1]);
+        seed = Long.parseLong(lines.get(1).split(" ")[1]);
+        random = new SplittableRandom(Long.parseLong(lines.get(2).split(" ")[1]));
+
+        population.clear();
+        for (String line : lines.subList(3, lines.size())) {
+            String[] values = line.trim().split(" ");
+            if (values.length != BoardEvaluator.FEATURES + 1)
+                throw new IOException("Invalid checkpoint line: " + line);
+
+            double[] weights = new double[BoardEvaluator.FEATURES];
+            for (int i = 0; i < weights.length; i++)
+                weights[i] = Double.parseDouble(values[i + 1]);
+            Candidate candidate = new Candidate(weights);
+            candidate.fitness = Double.parseDouble(values[0]);
+            population.add(candidate);
+        }
+        return !population.isEmpty();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Tetris.GameMode gameMode = Tetris.GameMode.forName(args.length > 0 ? args[0] : Tetris.DEFAULT_GAME_MODE);
+        String fitness = args.length > 1 ? args[1] : "lines";
+        int generations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int populationSize = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int gamesPerCandidate = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        Path checkpoint = args.length > 5 ? Paths.get(args[5]) : DIRECTORY.resolve(gameMode.name + "-" + fitness + ".txt");
+
+        if (!fitness.equals("lines") && !fitness.equals("score"))
+            throw new IllegalArgumentException("Unknown fitness: " + fitness);
+
+        GeneticTuner tuner = new GeneticTuner(gameMode, fitness.equals("score"), gamesPerCandidate, checkpoint);
+        if (tuner.loadCheckpoint()) {
+            System.out.println("Continuing from generation " + tuner.generation + " of " + checkpoint);
+            tuner.breed();
+        } else
+            tuner.createPopulation(populationSize, System.nanoTime());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (int i = 0; i < generations; i++) {
+                long start = System.nanoTime();
+                tuner.evaluatePopulation(executor);
+                tuner.saveCheckpoint();
+
+                Candidate best = tuner.population.get(0);
+                System.out.printf("Generation %d: best %.1f %s, average %.1f in %.1f seconds%n", tuner.generation, best.fitness, fitness,
+                        tuner.population.stream().mapToDouble(c -> c.fitness).average().orElse(0), (System.nanoTime() - start) / 1e9);
+                System.out.println("    Weights: " + Arrays.toString(best.weights));
+
+                if (i < generations - 1)
+                    tuner.breed();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
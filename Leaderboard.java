@@ -0,0 +1,380 @@
+//**********************************************************************************************************************************
+// Leaderboard.java
+//
+// High scores of a game mode. Every score is appended to a log file with a CRC, so a score is not lost when the program exits
+// and a broken write only loses its own record. Scores are also kept in an index file sorted by score. The index is memory
+// mapped, so the best scores and the rank of a score are read without reading the files. The index remembers how much of the
+// log it contains, so opening the leaderboard only reads the records written after it. A new score is only appended to the log,
+// it is kept in memory until MERGE_RECORDS scores are merged into the index together (Or the leaderboard is opened again).
+// When the log grows too much, it is compacted into the scores of the index.
+// There are two index files. The new index is written over the older one and its header is written last, so a broken write
+// leaves the other index usable. (A mapped file could not be replaced on every system)
+//
+// =FILES=
+// <mode>.log: magic, generation (8 bytes), records: crc, score, lines, level, time (8 bytes), name (16 bytes)
+// <mode>.0.idx, <mode>.1.idx: magic, generation (8 bytes), sequence, count, log length (8 bytes),
+//                             entries sorted by score: score, lines, level, time, name
+//**********************************************************************************************************************************
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class Leaderboard {
+
+    static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".tetris", "leaderboard");
+
+    static final int LOG_MAGIC = 0x544C4F47;   //"TLOG"
+    static final int INDEX_MAGIC = 0x54494458;   //"TIDX"
+    static final int LOG_HEADER_SIZE = 12;
+    static final int INDEX_HEADER_SIZE = 28;
+    static final int NAME_SIZE = 16;
+    static final int ENTRY_SIZE = 20 + NAME_SIZE;   //score, lines, level, time, name
+    static final int RECORD_SIZE = 4 + ENTRY_SIZE;   //crc and the entry
+    static final int MAX_ENTRIES = 10_000;   //Lower scores are dropped from the index
+    static final int COMPACT_RECORDS = 2 * MAX_ENTRIES;   //Log is compacted when it has that many records
+    static final int MERGE_RECORDS = 256;   //New scores that are merged into the index together
+
+    //A Score Of The Leaderboard
+    static final class Entry {
+        final int score;
+        final int lines;
+        final int level;
+        final long time;   //Milliseconds since 1970
+        final String name;
+
+        Entry(int score, int lines, int level, long time, String name) {
+            this.score = score;
+            this.lines = lines;
+            this.level = level;
+            this.time = time;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + score + " (" + lines + " lines, level " + level + ")";
+        }
+    }
+
+    final Path logFile;
+    final Path[] indexFiles;
+    final CRC32 crc = new CRC32();
+    final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    FileChannel log;
+    long generation;   //Changes when the log is compacted. Index of another generation is rebuilt
+    MappedByteBuffer index;
+    int indexNumber = 1;   //Index file that is mapped. The next index is written into the other one
+    int sequence = 0;   //Sequence number of the mapped index. Newer index has a bigger number
+    int count;   //Entries of the index
+    final List<Entry> pending = new ArrayList<>();   //Scores of the log that are not in the index yet, sorted by score
+
+    //Opens The Leaderboard Of The Game Mode In The Default Directory
+    public static Leaderboard open(Tetris.GameMode gameMode) throws IOException {
+        return new Leaderboard(DIRECTORY, gameMode.name);
+    }
+
+    //Opens The Leaderboard. Reads Only The Records That Are Not In The Index Yet
+    public Leaderboard(Path directory, String name) throws IOException {
+        Files.createDirectories(directory);
+        logFile = directory.resolve(name + ".log");
+        indexFiles = new Path[]{directory.resolve(name + ".0.idx"), directory.resolve(name + ".1.idx")};
+
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!readLogHeader()) {
+            generation = System.nanoTime();
+            log.truncate(0);
+            writeLogHeader(log, generation);
+        }
+
+        long indexedLength = mapIndex();
+        List<Entry> tail = readLog(indexedLength);
+        if (!tail.isEmpty() || indexedLength != log.size())
+            writeIndex(tail, log.size());
+    }
+
+    //Reads The Generation Of The Log. Returns false If The Log Is New Or Broken
+    boolean readLogHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        if (log.read(header, 0) != LOG_HEADER_SIZE)
+            return false;
+        header.flip();
+        if (header.getInt() != LOG_MAGIC)
+            return false;
+        generation = header.getLong();
+        return true;
+    }
+
+    static void writeLogHeader(FileChannel channel, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+        header.putInt(LOG_MAGIC).putLong(generation).flip();
+        channel.write(header, 0);
+    }
+
+    //Maps The Newest Valid Index. Returns The Length Of The Log That It Contains. (Start of the records if it must be rebuilt)
+    long mapIndex() throws IOException {
+        index = null;
+        count = 0;
+        long indexedLength = LOG_HEADER_SIZE;
+
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        for (int i = 0; i < indexFiles.length; i++) {
+            if (!Files.exists(indexFiles[i]))
+                continue;
+
+            try (FileChannel channel = FileChannel.open(indexFiles[i], StandardOpenOption.READ)) {
+                header.clear();
+                if (channel.read(header, 0) != INDEX_HEADER_SIZE)
+                    continue;
+                header.flip();
+
+                if (header.getInt() != INDEX_MAGIC || header.getLong() != generation)
+                    continue;
+                int indexSequence = header.getInt();
+                int entries = header.getInt();
+                long logLength = header.getLong();
+                long size = INDEX_HEADER_SIZE + (long) entries * ENTRY_SIZE;
+                if (entries < 0 || size > channel.size() || logLength > log.size() || (logLength - LOG_HEADER_SIZE) % RECORD_SIZE != 0)
+                    continue;
+
+                if (index == null || indexSequence > sequence) {
+                    index = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    indexNumber = i;
+                    sequence = indexSequence;
+                    count = entries;
+                    indexedLength = logLength;
+                }
+            }
+        }
+        return indexedLength;
+    }
+
+    //Reads The Records From The Position To The End Of The Log. A Broken Record And The Rest Of The Log Are Removed
+    List<Entry> readLog(long position) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long size = log.size();
+
+        for (; position + RECORD_SIZE <= size; position += RECORD_SIZE) {
+            record.clear();
+            log.read(record, position);
+            record.flip();
+
+            int expected = record.getInt();
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != expected)
+                break;
+
+            record.position(4);
+            entries.add(readEntry(record));
+        }
+        if (position < size) {
+            System.out.println("Leaderboard log is broken after " + entries.size() + " new records. Rest of it is removed");
+            log.truncate(position);
+        }
+        return entries;
+    }
+
+    static Entry readEntry(ByteBuffer buffer){
+        int score = buffer.getInt();
+        int lines = buffer.getInt();
+        int level = buffer.getInt();
+        long time = buffer.getLong();
+        byte[] name = new byte[NAME_SIZE];
+        buffer.get(name);
+
+        int length = 0;
+        while (length < NAME_SIZE && name[length] != 0)
+            length++;
+        return new Entry(score, lines, level, time, new String(name, 0, length, StandardCharsets.UTF_8));
+    }
+
+    static void writeEntry(ByteBuffer buffer, Entry entry){
+        buffer.putInt(entry.score).putInt(entry.lines).putInt(entry.level).putLong(entry.time);
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+
+        //Long names are cut after the last whole character that fits. (Bytes 10xxxxxx continue a character)
+        int length = Math.min(name.length, NAME_SIZE);
+        if (length < name.length)
+            while (length > 0 && (name[length] & 0xC0) == 0x80)
+                length--;
+        buffer.put(name, 0, length);
+        for (int i = length; i < NAME_SIZE; i++)
+            buffer.put((byte) 0);
+    }
+
+    //Merges The Entries Into The Index. New Index Is Written Into The Other Index File And Its Header Is Written Last
+    void writeIndex(List<Entry> additions, long logLength) throws IOException {
+        Entry[] sorted = additions.toArray(new Entry[0]);
+        Arrays.sort(sorted, (a, b) -> Integer.compare(b.score, a.score));
+
+        int newCount = Math.min(MAX_ENTRIES, count + sorted.length);
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + newCount * ENTRY_SIZE);
+        buffer.putInt(INDEX_MAGIC).putLong(generation).putInt(sequence + 1).putInt(newCount).putLong(logLength);
+
+        //Old entries come before the new ones with the same score
+        int old = 0;
+        int added = 0;
+        for (int i = 0; i < newCount; i++) {
+            if (added == sorted.length || (old < count && scoreAt(old) >= sorted[added].score)) {
+                buffer.put(index.slice(INDEX_HEADER_SIZE + old * ENTRY_SIZE, ENTRY_SIZE));
+                old++;
+            }
+            else
+                writeEntry(buffer, sorted[added++]);
+        }
+
+        int target = 1 - indexNumber;
+        try (FileChannel channel = FileChannel.open(indexFiles[target], StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer.flip();
+            buffer.position(INDEX_HEADER_SIZE);
+            channel.write(buffer, INDEX_HEADER_SIZE);
+            channel.force(false);
+
+            buffer.rewind().limit(INDEX_HEADER_SIZE);
+            channel.write(buffer, 0);
+            channel.force(false);
+
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, INDEX_HEADER_SIZE + (long) newCount * ENTRY_SIZE);
+        }
+        indexNumber = target;
+        sequence++;
+        count = newCount;
+    }
+
+    //Returns The Score Of The Entry At The Given Index (Index 0 is the best score)
+    int scoreAt(int i){
+        return index.getInt(INDEX_HEADER_SIZE + i * ENTRY_SIZE);
+    }
+
+    //Adds A Score. Its Log Record Is Written To The Disk Before This Method Returns. Returns The Rank Of The Score
+    public synchronized int add(int score, int lines, int level, String name) throws IOException {
+        Entry entry = new Entry(score, lines, level, System.currentTimeMillis(), name);
+
+        record.clear();
+        record.position(4);
+        writeEntry(record, entry);
+        record.flip().position(4);
+        crc.reset();
+        crc.update(record);
+        record.putInt(0, (int) crc.getValue()).position(0);
+
+        long position = log.size();
+        log.write(record, position);
+        log.force(false);
+
+        //Comes after the pending scores that are the same, like the index
+        int low = 0;
+        int high = pending.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pending.get(middle).score >= score)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        pending.add(low, entry);
+
+        if ((log.size() - LOG_HEADER_SIZE) / RECORD_SIZE >= COMPACT_RECORDS)
+            compact();
+        else if (pending.size() >= MERGE_RECORDS)
+            mergePending();
+        return rankOf(score);
+    }
+
+    //Writes The Pending Scores Into The Index
+    void mergePending() throws IOException {
+        writeIndex(pending, log.size());
+        pending.clear();
+    }
+
+    //Rewrites The Log With Only The Scores Of The Index
+    synchronized void compact() throws IOException {
+        if (!pending.isEmpty())
+            mergePending();
+        long newGeneration = generation + 1;
+        Path temporary = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeLogHeader(channel, newGeneration);
+            long position = LOG_HEADER_SIZE;
+            for (int i = 0; i < count; i++, position += RECORD_SIZE) {
+                record.clear();
+                record.position(4);
+                record.put(index.slice(INDEX_HEADER_SIZE + i * ENTRY_SIZE, ENTRY_SIZE));
+                record.flip().position(4);
+                crc.reset();
+                crc.update(record);
+                record.putInt(0, (int) crc.getValue()).position(0);
+                channel.write(record, position);
+            }
+            channel.force(false);
+        }
+
+        log.close();
+        Files.move(temporary, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        generation = newGeneration;
+        writeIndex(List.of(), log.size());
+    }
+
+    //Returns The Rank Of The Score. (1 + Number of the higher scores of the index and the pending scores)
+    public synchronized int rankOf(int score){
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (scoreAt(middle) > score)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        int higher = low;
+
+        low = 0;
+        high = pending.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pending.get(middle).score > score)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return Math.min(MAX_ENTRIES, higher + low) + 1;
+    }
+
+    //Returns The Best Scores. Pending scores are merged with the index like writeIndex() does
+    public synchronized List<Entry> top(int n){
+        List<Entry> entries = new ArrayList<>();
+        int old = 0;
+        int added = 0;
+        while (entries.size() < Math.min(n, size())) {
+            if (added == pending.size() || (old < count && scoreAt(old) >= pending.get(added).score))
+                entries.add(readEntry(index.slice(INDEX_HEADER_SIZE + old++ * ENTRY_SIZE, ENTRY_SIZE)));
+            else
+                entries.add(pending.get(added++));
+        }
+        return entries;
+    }
+
+    public synchronized int size(){
+        return Math.min(MAX_ENTRIES, count + pending.size());
+    }
+
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+}
@@ -0,0 +1,211 @@
+//**********************************************************************************************************************************
+// PerformanceOverlay.java
+//
+// Debug overlay of the game window, turned on and off with F3. Shows the numbers of the last second: frames painted per second,
+// time between the frames (min, average and 99th percentile), time from a key press to the first frame painted after the game
+// loop applied it, gravity of the current Tetromino, live threads, used heap and garbage collections.
+//
+// Frame times are counted in a histogram and the text is written into char arrays that are allocated once, so painting the
+// overlay does not create garbage and does not change the numbers that it measures. Numbers are sampled once in a second.
+//**********************************************************************************************************************************
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PerformanceOverlay {
+
+    static final long WINDOW_NANOS = 1_000_000_000L;   //Numbers are of the last second
+    static final int BUCKET_MICROS = 100;   //Frame time histogram has 0.1 ms buckets
+    static final int BUCKETS = 2000;   //Up to 200 ms. Longer frames are counted in the last bucket
+    static final int LINES = 7;
+    static final int LINE_LENGTH = 64;
+    static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    static final Color BACKGROUND = Color.BLACK;   //Opaque. Translucent fills allocate a mask for every paint in the software pipeline
+
+    boolean visible = false;
+
+    //Frames of the current second
+    private final int[] histogram = new int[BUCKETS];
+    private long windowStart = 0;
+    private long lastFrame = 0;
+    private int frames = 0;
+    private long frameMin = Long.MAX_VALUE;
+    private long frameMax = 0;
+    private long frameSum = 0;
+
+    //Input latency. Time of the first key press that is applied by the game loop but not painted yet (0 if there is none)
+    private final AtomicLong inputNanos = new AtomicLong();
+    private long latencySum = 0;
+    private long latencyMax = 0;
+    private int latencyCount = 0;
+
+    private final Runtime runtime = Runtime.getRuntime();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private long lastCollections = -1;
+
+    //Text of the overlay
+    private final char[][] lines = new char[LINES][LINE_LENGTH];
+    private final int[] lineLengths = new int[LINES];
+    private int line = 0;   //Line that is being written
+
+    public PerformanceOverlay() {
+        writeLines(0, 0, 0, 0, 0, 0, 0);
+    }
+
+    //Records The Time Of A Key Press When The Game Applies It. Called by the game loop with the time from queueing to applying
+    //(Tetris.inputLatency). Inputs are applied at the start of a tick, so frames painted before it do not show them
+    public void inputApplied(long queuedNanos){
+        if (visible)
+            inputNanos.compareAndSet(0, System.nanoTime() - queuedNanos);
+    }
+
+    //Counts The Frame And Paints The Overlay Into The Top Left Corner. Called at the end of every paint
+    public void paint(Graphics g, Tetris game){
+        if (!visible) {
+            lastFrame = 0;
+            return;
+        }
+        long now = System.nanoTime();
+
+        if (lastFrame == 0) {
+            //First frame after it is turned on. Starts a new second
+            windowStart = now;
+            lastCollections = -1;
+        } else {
+            long frameTime = now - lastFrame;
+            histogram[(int) Math.min(frameTime / 1000 / BUCKET_MICROS, BUCKETS - 1)]++;
+            frames++;
+            frameSum += frameTime;
+            frameMin = Math.min(frameMin, frameTime);
+            frameMax = Math.max(frameMax, frameTime);
+        }
+        lastFrame = now;
+
+        long pressed = inputNanos.getAndSet(0);
+        if (pressed != 0) {
+            long latency = now - pressed;
+            latencySum += latency;
+            latencyMax = Math.max(latencyMax, latency);
+            latencyCount++;
+        }
+
+        if (now - windowStart >= WINDOW_NANOS)
+            sample(game, now);
+
+        g.setFont(FONT);
+        int lineHeight = FONT.getSize() + 2;
+        g.setColor(BACKGROUND);
+        g.fillRect(4, 4, 44 * FONT.getSize() * 6 / 10, LINES * lineHeight + 8);   //Monospaced characters are about 0.6 of the font size wide
+        g.setColor(Color.GREEN);
+        for (int i = 0; i < LINES; i++)
+            g.drawChars(lines[i], 0, lineLengths[i], 8, 8 + (i + 1) * lineHeight);
+    }
+
+    //Writes The Numbers Of The Last Second And Starts The Next Second
+    void sample(Tetris game, long now){
+        long fps = frames * WINDOW_NANOS / (now - windowStart);
+
+        //99th percentile is the bucket that contains the frame with 99% of the frames under it
+        long p99 = 0;
+        int target = (frames * 99 + 99) / 100;
+        int counted = 0;
+        for (int i = 0; i < BUCKETS && counted < target; i++) {
+            counted += histogram[i];
+            p99 = (i + 1) * BUCKET_MICROS * 1000L;
+        }
+        p99 = Math.min(p99, frameMax);
+
+        long collections = 0;
+        for (int i = 0; i < collectors.size(); i++)
+            collections += Math.max(0, collectors.get(i).getCollectionCount());
+        long newCollections = lastCollections < 0 ? 0 : collections - lastCollections;
+        lastCollections = collections;
+
+        writeLines(fps, frames > 0 ? frameMin : 0, frames > 0 ? frameSum / frames : 0, p99,
+                latencyCount > 0 ? latencySum / latencyCount : -1, (long) (game.gravityInterval() * 1_000_000), newCollections);
+
+        Arrays.fill(histogram, 0);
+        windowStart = now;
+        frames = 0;
+        frameMin = Long.MAX_VALUE;
+        frameMax = 0;
+        frameSum = 0;
+        latencySum = 0;
+        latencyMax = 0;
+        latencyCount = 0;
+    }
+
+    //Writes The Lines Of The Overlay. Times are in nanoseconds, latency is -1 if no key is pressed
+    void writeLines(long fps, long frameMin, long frameAverage, long frameP99, long latency, long gravity, long collections){
+        line = 0;
+        begin("FPS: ").number(fps);
+        begin("Frame: ").millis(frameMin).text(" / ").millis(frameAverage).text(" / ").millis(frameP99).text(" ms (min/avg/p99)");
+        begin("Input latency: ");
+        if (latency < 0)
+            text("-");
+        else
+            millis(latency).text(" ms (max ").millis(latencyMax).text(")");
+        begin("Gravity: ").millis(gravity).text(" ms per row");
+        begin("Threads: ").number(threads.getThreadCount());
+        begin("Heap: ").number((runtime.totalMemory() - runtime.freeMemory()) >> 20).text(" MB of ").number(runtime.maxMemory() >> 20).text(" MB");
+        begin("GC: ").number(collections).text(" in the last second");
+    }
+
+    /* Writes Into The Current Line Without Creating Strings */
+    PerformanceOverlay begin(String text){
+        line++;
+        lineLengths[line - 1] = 0;
+        return text(text);
+    }
+
+    PerformanceOverlay text(String text){
+        int length = Math.min(text.length(), LINE_LENGTH - lineLengths[line - 1]);
+        text.getChars(0, length, lines[line - 1], lineLengths[line - 1]);
+        lineLengths[line - 1] += length;
+        return this;
+    }
+
+    PerformanceOverlay number(long value){
+        char[] chars = lines[line - 1];
+        int start = lineLengths[line - 1];
+        if (value < 0) {
+            append('-');
+            value = -value;
+            start++;
+        }
+        do {
+            append((char) ('0' + value % 10));
+            value /= 10;
+        } while (value > 0);
+
+        //Digits are written from the last one, reverses them
+        for (int i = start, j = lineLengths[line - 1] - 1; i < j; i++, j--) {
+            char temp = chars[i];
+            chars[i] = chars[j];
+            chars[j] = temp;
+        }
+        return this;
+    }
+
+    //Writes Nanoseconds As Milliseconds With One Decimal
+    PerformanceOverlay millis(long nanos){
+        long tenths = (nanos + 50_000) / 100_000;
+        number(tenths / 10);
+        append('.');
+        append((char) ('0' + tenths % 10));
+        return this;
+    }
+
+    void append(char c){
+        if (lineLengths[line - 1] < LINE_LENGTH)
+            lines[line - 1][lineLengths[line - 1]++] = c;
+    }
+}
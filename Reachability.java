@@ -0,0 +1,266 @@
+//**********************************************************************************************************************************
+// Reachability.java
+//
+// Finds every place that a Tetromino could be locked in and the shortest inputs to get there. Dropping each rotation from each
+// column misses the placements under an overhang (tucks) and the rotations that only fit under a block (spins).
+// Breadth first search goes through the positions of the Tetromino (x, y and rotation) with the moves of Tetromino: move left,
+// move right, held left and right (DAS, moves until the Tetromino is blocked), soft drop one row, rotate left and rotate right
+// (Rotation does not kick, it only happens if the Tetromino fits). A position that could not move down is a final position. It
+// is reached by soft dropping into it, or by hard dropping from any position above it in modes that have hard drop.
+// Search finds the least key presses (moves and rotations) for every position. Drops are not counted, so the positions under a
+// reached position are added with the same presses. Among the paths with the least presses the shortest one is kept.
+// Gravity is not simulated, inputs are assumed to be faster than it.
+//
+// Every array is allocated once, so a search does not create anything and could run thousands of times in a second.
+//**********************************************************************************************************************************
+
+import java.util.Arrays;
+
+public class Reachability {
+
+    static final int WIDTH = Bot.WIDTH;
+    static final int HEIGHT = Bot.HEIGHT;
+    static final int X_RANGE = WIDTH + 3;   //x coordinate of the 4x4 box is from -3 to 9
+    static final int STATES = 4 * HEIGHT * X_RANGE;   //Positions. State is (rotation * HEIGHT + y) * X_RANGE + x + 3
+
+    //Inputs of a path
+    static final byte LEFT = 0;
+    static final byte RIGHT = 1;
+    static final byte DOWN = 2;   //Soft drop one row
+    static final byte ROTATE_LEFT = 3;
+    static final byte ROTATE_RIGHT = 4;
+    static final byte HARD_DROP = 5;
+    static final byte DAS_LEFT = 6;   //Left key is held until the Tetromino could not move
+    static final byte DAS_RIGHT = 7;
+    static final String[] INPUT_NAMES = {"Left", "Right", "Down", "Rotate Left", "Rotate Right", "Hard Drop", "DAS Left", "DAS Right"};
+    static final int MAX_PATH = STATES + 1;
+
+    //Search of the last Tetromino
+    int[] board;
+    Tetris.PieceShape shape;
+    final long[] visited = new long[(STATES + 63) / 64];
+    final int[] queue = new int[STATES];   //States in the order they are found. Every state is added once
+    final int[] parents = new int[STATES];   //State that the state is reached from
+    final byte[] parentInputs = new byte[STATES];   //Input that reaches the state from its parent
+    final int[] presses = new int[STATES];   //Moves and rotations from the spawn position. Drops are not counted
+    final int[] lengths = new int[STATES];   //All inputs of the path from the spawn position
+    int stateCount = 0;
+
+    //Final positions. Positions that fill the same cells are counted once (for ex. the two horizontal positions of I)
+    int poseCount = 0;
+    final int[] poseX = new int[STATES];
+    final int[] poseY = new int[STATES];
+    final int[] poseRotation = new int[STATES];
+    final int[] poseLast = new int[STATES];   //Last state of the path. Hard dropped from there, or the final position itself
+    final boolean[] poseHardDrop = new boolean[STATES];
+    final int[] poseLength = new int[STATES];   //Inputs of the path
+    final int[] posePresses = new int[STATES];   //Moves and rotations of the path (Least key presses for the placement)
+    final long[] poseCells = new long[STATES];   //Filled cells. Used to find the same placements
+    final int[] poseIndex = new int[STATES];   //Pose of each final state. -1 for other states
+
+    static int state(int x, int y, int rotation){
+        return (rotation * HEIGHT + y) * X_RANGE + x + 3;
+    }
+
+    static int stateX(int state){
+        return state % X_RANGE - 3;
+    }
+
+    static int stateY(int state){
+        return state / X_RANGE % HEIGHT;
+    }
+
+    static int stateRotation(int state){
+        return state / (X_RANGE * HEIGHT);
+    }
+
+    //Finds Every Final Position Of The Shape That Starts From The Spawn Position. Returns The Number Of Final Positions
+    public int search(int[] board, Tetris.PieceShape shape, boolean hardDrop){
+        return search(board, shape, Tetris.SPAWN_X, Tetris.SPAWN_Y, 0, hardDrop);
+    }
+
+    //Finds Every Final Position Of The Shape That Starts From The Given Position
+    public int search(int[] board, Tetris.PieceShape shape, int startX, int startY, int startRotation, boolean hardDrop){
+        this.board = board;
+        this.shape = shape;
+        Arrays.fill(visited, 0);
+        stateCount = 0;
+        poseCount = 0;
+        if (!Bot.fits(board, shape, startRotation, startX, startY))
+            return 0;
+
+        //States are added in the order of their presses, because the states under a state are added with it
+        visitWithDrops(-1, startX, startY, startRotation, (byte) -1, 0, 0);
+
+        int rotations = shape.cells.length;
+        for (int head = 0; head < stateCount; head++) {
+            int current = queue[head];
+            int x = stateX(current), y = stateY(current), rotation = stateRotation(current);
+            int pressCount = presses[current] + 1;
+            int length = lengths[current] + 1;
+
+            tryMove(current, x - 1, y, rotation, LEFT, pressCount, length);
+            tryMove(current, x + 1, y, rotation, RIGHT, pressCount, length);
+            if (rotations > 1) {
+                tryMove(current, x, y, (rotation + rotations - 1) % rotations, ROTATE_LEFT, pressCount, length);
+                tryMove(current, x, y, (rotation + 1) % rotations, ROTATE_RIGHT, pressCount, length);
+            }
+
+            //Held keys. Moving one column is the same as a tap
+            int left = x;
+            while (Bot.fits(board, shape, rotation, left - 1, y))
+                left--;
+            if (left < x - 1)
+                tryMove(current, left, y, rotation, DAS_LEFT, pressCount, length);
+            int right = x;
+            while (Bot.fits(board, shape, rotation, right + 1, y))
+                right++;
+            if (right > x + 1)
+                tryMove(current, right, y, rotation, DAS_RIGHT, pressCount, length);
+        }
+
+        //Final positions. Hard drop could make a final position closer than soft dropping
+        for (int i = 0; i < stateCount; i++)
+            poseIndex[queue[i]] = -1;
+        for (int i = 0; i < stateCount; i++) {
+            int current = queue[i];
+            int x = stateX(current), y = stateY(current), rotation = stateRotation(current);
+
+            int landing = y;
+            while (Bot.fits(board, shape, rotation, x, landing + 1))
+                landing++;
+            int finalState = state(x, landing, rotation);
+
+            //Soft dropping into the final position costs the inputs of its path, hard dropping costs one more input than the
+            //position it is dropped from. Drops are not presses, so both have the presses of their last position
+            boolean viaHardDrop = hardDrop && landing != y;
+            if (landing != y && !viaHardDrop)
+                continue;   //Reached by soft dropping when the final state itself is handled
+
+            addPose(finalState, current, viaHardDrop, presses[current], lengths[current] + (viaHardDrop ? 1 : 0));
+        }
+        return poseCount;
+    }
+
+    //Adds The State And The States Under It Into The Queue If It Fits And It Is Not Visited Yet
+    void tryMove(int parent, int x, int y, int rotation, byte input, int pressCount, int length){
+        if (x < -3 || x >= WIDTH || y >= HEIGHT)
+            return;
+        int next = state(x, y, rotation);
+        if ((visited[next >>> 6] & (1L << next)) != 0 || !Bot.fits(board, shape, rotation, x, y))
+            return;
+        visitWithDrops(parent, x, y, rotation, input, pressCount, length);
+    }
+
+    //Visits The State And Soft Drops From It Until A Visited State Or The Final Position. Soft drops do not add presses
+    void visitWithDrops(int parent, int x, int y, int rotation, byte input, int pressCount, int length){
+        int state = state(x, y, rotation);
+        visit(state, parent, input, pressCount, length);
+        while (y + 1 < HEIGHT && Bot.fits(board, shape, rotation, x, y + 1)) {
+            int below = state(x, ++y, rotation);
+            if ((visited[below >>> 6] & (1L << below)) != 0)
+                return;   //It was visited with the same or less presses, and so were the states under it
+            visit(below, state, DOWN, pressCount, ++length);
+            state = below;
+        }
+    }
+
+    void visit(int state, int parent, byte input, int pressCount, int length){
+        visited[state >>> 6] |= 1L << state;
+        parents[state] = parent;
+        parentInputs[state] = input;
+        presses[state] = pressCount;
+        lengths[state] = length;
+        queue[stateCount++] = state;
+    }
+
+    //Adds The Final State Or Makes Its Path Better (Less presses, then less inputs). Same cells of another final state are the
+    //same placement
+    void addPose(int finalState, int last, boolean viaHardDrop, int pressCount, int length){
+        int pose = poseIndex[finalState];
+        if (pose == -1) {
+            long cells = cells(finalState);
+            for (int i = 0; i < poseCount; i++) {
+                if (poseCells[i] == cells) {
+                    pose = i;
+                    break;
+                }
+            }
+            if (pose == -1) {
+                pose = poseCount++;
+                poseCells[pose] = cells;
+                posePresses[pose] = Integer.MAX_VALUE;
+            }
+            poseIndex[finalState] = pose;
+        }
+        if (pressCount > posePresses[pose] || (pressCount == posePresses[pose] && length >= poseLength[pose]))
+            return;
+
+        poseX[pose] = stateX(finalState);
+        poseY[pose] = stateY(finalState);
+        poseRotation[pose] = stateRotation(finalState);
+        poseLast[pose] = last;
+        poseHardDrop[pose] = viaHardDrop;
+        poseLength[pose] = length;
+        posePresses[pose] = pressCount;
+    }
+
+    //Returns The Filled Cells Of The State. Lowest row and the four rows above it as bit masks
+    long cells(int state){
+        int x = stateX(state), y = stateY(state);
+        int top = HEIGHT;
+        for (int[] cell : shape.cells[stateRotation(state)])
+            top = Math.min(top, y + cell[1]);
+
+        long cells = (long) top << 40;
+        for (int[] cell : shape.cells[stateRotation(state)])
+            cells |= 1L << ((y + cell[1] - top) * WIDTH + x + cell[0]);
+        return cells;
+    }
+
+    //Writes The Inputs Of The Pose Into The Array (Its length must be at least poseLength). Returns The Number Of Inputs
+    public int path(int pose, byte[] inputs){
+        int length = poseLength[pose];
+        int i = length;
+        if (poseHardDrop[pose])
+            inputs[--i] = HARD_DROP;
+        for (int state = poseLast[pose]; parents[state] != -1; state = parents[state])
+            inputs[--i] = parentInputs[state];
+        return length;
+    }
+
+    //Returns The Pose That Fills The Same Cells As The Given Position, Or -1 If It Could Not Be Reached
+    public int findPose(int x, int y, int rotation){
+        long cells = cells(state(x, y, rotation));
+        for (int i = 0; i < poseCount; i++) {
+            if (poseCells[i] == cells)
+                return i;
+        }
+        return -1;
+    }
+
+    //Gives The Input To The Current Tetromino Of The Game. Returns false If It Did Not Move
+    static boolean perform(Tetris game, byte input){
+        Tetris.Tetromino tetromino = game.currentTetromino;
+        int rotation = tetromino.rotation;
+        switch (input) {
+            case LEFT: return tetromino.moveLeft();
+            case RIGHT: return tetromino.moveRight();
+            case DOWN: return tetromino.moveDown();
+            case DAS_LEFT: return moveFully(tetromino, -1);
+            case DAS_RIGHT: return moveFully(tetromino, 1);
+            case ROTATE_LEFT: tetromino.rotateLeft(); return tetromino.rotation != rotation;
+            case ROTATE_RIGHT: tetromino.rotateRight(); return tetromino.rotation != rotation;
+            case HARD_DROP: game.hardDrop(); return true;
+            default: return false;
+        }
+    }
+
+    //Moves The Tetromino Until It Is Blocked, Like A Held Key. Returns false If It Did Not Move
+    static boolean moveFully(Tetris.Tetromino tetromino, int direction){
+        boolean moved = false;
+        while (direction < 0 ? tetromino.moveLeft() : tetromino.moveRight())
+            moved = true;
+        return moved;
+    }
+}
@@ -0,0 +1,155 @@
+//**********************************************************************************************************************************
+// Replay.java
+//
+// Recording of a game: game mode, the seed of the Tetromino generator, every input of the player with the frame that it was
+// given in, and a hash of the state of the game (board, Tetrominoes, score) in every HASH_INTERVAL frames. The game is
+// deterministic, so playing the same inputs in the same frames gives the same game. ReplayVerifier plays it again and compares
+// the hashes to find the replays that are changed.
+//
+// Inputs are applied between the frames: inputs of frame f are queued after tick() makes the frame count f, and the next tick()
+// applies them before it counts the next frame. Hash of frame f is taken right after the tick that makes it, before its inputs.
+//
+// File: MAGIC, game mode id, seed, final frame, score, lines, final hash, hash count, hashes, event count, events.
+// Event: frames since the previous event (variable length) and the input.
+//**********************************************************************************************************************************
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class Replay {
+
+    static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".tetris", "replays");
+    static final int MAGIC = 0x54525031;   //"TRP1"
+    static final int HASH_INTERVAL = 60;   //Frames between the state hashes
+
+    //Inputs
+    static final byte LEFT = 0;
+    static final byte RIGHT = 1;
+    static final byte ROTATE_LEFT = 2;
+    static final byte ROTATE_RIGHT = 3;
+    static final byte SOFT_DROP = 4;   //Soft drop key is pressed
+    static final byte SOFT_DROP_RELEASE = 5;
+    static final byte HOLD = 6;
+    static final byte HARD_DROP = 7;
+    static final int INPUT_COUNT = 8;
+
+    final int gameModeId;
+    final long seed;   //State of the Tetromino generator when the game started
+
+    byte[] events = new byte[1024];
+    int eventsLength = 0;
+    int eventCount = 0;
+    private int lastEventFrame = 0;
+
+    long[] hashes = new long[64];   //Hash of the frames HASH_INTERVAL, 2*HASH_INTERVAL, ...
+    int hashCount = 0;
+    private int lastFrame = 0;   //Frame count of the last tick. Paused game does not count frames
+
+    //End of the game. finalFrame is -1 until the game is over
+    int finalFrame = -1;
+    int finalScore = 0;
+    int finalLines = 0;
+    long finalHash = 0;
+
+    public Replay(int gameModeId, long seed) {
+        this.gameModeId = gameModeId;
+        this.seed = seed;
+    }
+
+    //Records An Input Given In The Frame
+    public void input(int frame, byte input){
+        if (eventsLength + 6 > events.length)
+            events = Arrays.copyOf(events, events.length * 2);
+
+        //Frames since the previous event. 7 bits in a byte, the high bit means another byte follows
+        int delta = frame - lastEventFrame;
+        while (delta >= 0x80) {
+            events[eventsLength++] = (byte) (delta | 0x80);
+            delta >>>= 7;
+        }
+        events[eventsLength++] = (byte) delta;
+        events[eventsLength++] = input;
+        lastEventFrame = frame;
+        eventCount++;
+    }
+
+    //Records The State Hash After A Tick In Every HASH_INTERVAL Frames
+    public void tick(Tetris game){
+        int frame = game.getFrameCount();
+        if (frame == lastFrame || finalFrame >= 0)   //Finished replay could be written by another thread
+            return;
+        lastFrame = frame;
+
+        if (frame % HASH_INTERVAL == 0) {
+            if (hashCount == hashes.length)
+                hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            hashes[hashCount++] = game.stateHash();
+        }
+    }
+
+    //Records The End Of The Game
+    public void finish(Tetris game){
+        finalFrame = game.getFrameCount();
+        finalScore = game.getScore();
+        finalLines = game.getLines();
+        finalHash = game.stateHash();
+    }
+
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(37 + hashCount * 8 + 4 + eventsLength);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) gameModeId);
+        buffer.putLong(seed);
+        buffer.putInt(finalFrame);
+        buffer.putInt(finalScore);
+        buffer.putInt(finalLines);
+        buffer.putLong(finalHash);
+        buffer.putInt(hashCount);
+        for (int i = 0; i < hashCount; i++)
+            buffer.putLong(hashes[i]);
+        buffer.putInt(eventCount);
+        buffer.put(events, 0, eventsLength);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, buffer.array());
+    }
+
+    //Reads A Replay. Throws IOException If It Is Not A Replay Or It Is Cut
+    public static Replay read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not a replay");
+
+            Replay replay = new Replay(buffer.get(), buffer.getLong());
+            replay.finalFrame = buffer.getInt();
+            replay.finalScore = buffer.getInt();
+            replay.finalLines = buffer.getInt();
+            replay.finalHash = buffer.getLong();
+
+            int hashCount = buffer.getInt();
+            if (hashCount < 0 || hashCount > buffer.remaining() / 8)
+                throw new IOException("Invalid hash count: " + hashCount);
+            replay.hashes = new long[Math.max(1, hashCount)];
+            for (int i = 0; i < hashCount; i++)
+                replay.hashes[i] = buffer.getLong();
+            replay.hashCount = hashCount;
+
+            replay.eventCount = buffer.getInt();
+            replay.events = new byte[Math.max(1, buffer.remaining())];
+            replay.eventsLength = buffer.remaining();
+            buffer.get(replay.events, 0, replay.eventsLength);
+            return replay;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Replay is cut");
+        }
+    }
+
+    public static Replay read(Path file) throws IOException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+}
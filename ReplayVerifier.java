@@ -0,0 +1,182 @@
+//**********************************************************************************************************************************
+// ReplayVerifier.java
+//
+// Plays the replays again without window and checks that they give the same game. Every HASH_INTERVAL frames the state hash
+// of the game is compared with the recorded one, and the score, lines and final frame are compared at the end. Verification
+// stops at the first difference and reports its frame. A changed replay (inputs, hashes or the score) could not pass,
+// because the hashes and the score come from playing the inputs.
+//
+// Replays are verified at the same time on a work stealing thread pool.
+//
+// Usage: java ReplayVerifier [replay files or directories (~/.tetris/replays by default)]
+//**********************************************************************************************************************************
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class ReplayVerifier {
+
+    //Result Of A Replay. divergenceFrame Is -1 If The Replay Is Valid
+    static class Result {
+        final String name;
+        final int divergenceFrame;
+        final String reason;
+        final int score;
+
+        Result(String name, int divergenceFrame, String reason, int score) {
+            this.name = name;
+            this.divergenceFrame = divergenceFrame;
+            this.reason = reason;
+            this.score = score;
+        }
+
+        boolean isValid(){
+            return divergenceFrame == -1;
+        }
+
+        @Override
+        public String toString(){
+            if (isValid())
+                return name + ": valid, score " + score;
+            return name + ": INVALID at frame " + divergenceFrame + " (" + reason + ")";
+        }
+    }
+
+    //Plays The Replay Again And Compares It
+    static Result verify(String name, Replay replay){
+        return verify(name, replay, Integer.getInteger("tetris.preview", 1));
+    }
+
+    //Plays The Replay Again With The Given Preview Count. It must not change the game
+    static Result verify(String name, Replay replay, int previewCount){
+        if (replay.gameModeId < 0 || replay.gameModeId >= Tetris.GameMode.MODES.length)
+            return new Result(name, 0, "unknown game mode " + replay.gameModeId, 0);
+        if (replay.finalFrame < 0)
+            return new Result(name, 0, "game is not finished", 0);
+
+        Tetris game = new Tetris(Tetris.GameMode.MODES[replay.gameModeId], replay.seed);
+        game.logEvents = false;
+        game.previewCount = Math.max(1, Math.min(Tetris.MAX_PREVIEW, previewCount));
+
+        byte[] events = replay.events;
+        int position = 0;
+        int eventFrame = 0;
+        int hashIndex = 0;
+
+        while (true) {
+            int frame = game.getFrameCount();
+
+            //Inputs of the frame
+            while (position < replay.eventsLength) {
+                int delta = 0;
+                int shift = 0;
+                int start = position;
+                byte b;
+                do {
+                    if (position >= replay.eventsLength || shift > 28)
+                        return new Result(name, frame, "invalid input", 0);
+                    b = events[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+
+                if (eventFrame + delta != frame) {
+                    position = start;   //Input of a later frame
+                    if (eventFrame + delta < frame)
+                        return new Result(name, frame, "input of a past frame", 0);
+                    break;
+                }
+                if (position >= replay.eventsLength || events[position] < 0 || events[position] >= Replay.INPUT_COUNT)
+                    return new Result(name, frame, "invalid input", 0);
+                eventFrame = frame;
+                game.input(events[position++]);
+            }
+            if (frame > replay.finalFrame)
+                return new Result(name, frame, "game continues after its recorded end", 0);
+
+            //Applies the inputs and plays the next frame. A hard drop of the inputs could end the game without a frame
+            game.tick();
+            if (game.gameOver)
+                break;
+            int next = game.getFrameCount();
+            if (next != frame && next % Replay.HASH_INTERVAL == 0) {
+                if (hashIndex >= replay.hashCount || replay.hashes[hashIndex] != game.stateHash())
+                    return new Result(name, next, "state hash differs", 0);
+                hashIndex++;
+            }
+        }
+
+        int frame = game.getFrameCount();
+        if (position < replay.eventsLength)
+            return new Result(name, frame, "inputs after the game is over", 0);
+        if (frame != replay.finalFrame)
+            return new Result(name, frame, "game is over at frame " + frame + ", recorded " + replay.finalFrame, 0);
+        if (game.getScore() != replay.finalScore || game.getLines() != replay.finalLines)
+            return new Result(name, frame, "score " + game.getScore() + " and lines " + game.getLines() + " differ from the recorded "
+                    + replay.finalScore + " and " + replay.finalLines, 0);
+        if (game.stateHash() != replay.finalHash)
+            return new Result(name, frame, "final state hash differs", 0);
+        return new Result(name, -1, null, game.getScore());
+    }
+
+    //Verifies The Replays On The Pool. Results Are In The Same Order
+    static List<Result> verifyAll(ForkJoinPool pool, List<String> names, List<Replay> replays) throws InterruptedException, ExecutionException {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (int i = 0; i < replays.size(); i++) {
+            String name = names.get(i);
+            Replay replay = replays.get(i);
+            tasks.add(() -> verify(name, replay));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> result : pool.invokeAll(tasks))
+            results.add(result.get());
+        return results;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args.length > 0 ? args : new String[]{Replay.DIRECTORY.toString()}) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> list = Files.list(path)) {
+                    list.filter(p -> p.toString().endsWith(".replay")).sorted().forEach(files::add);
+                }
+            } else
+                files.add(path);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Replay> replays = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                replays.add(Replay.read(file));
+                names.add(file.getFileName().toString());
+            } catch (IOException e) {
+                System.out.println(file.getFileName() + ": INVALID (" + e.getMessage() + ")");
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = verifyAll(ForkJoinPool.commonPool(), names, replays);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int valid = 0;
+        for (Result result : results) {
+            System.out.println(result);
+            if (result.isValid())
+                valid++;
+        }
+        System.out.printf("%d of %d replays are valid. Verified in %.2f seconds (%.0f replays per second)%n", valid, results.size(), seconds,
+                results.size() / Math.max(seconds, 1e-9));
+    }
+}
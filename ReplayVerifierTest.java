@@ -0,0 +1,172 @@
+//**********************************************************************************************************************************
+// ReplayVerifierTest.java
+//
+// Checks the replays of games with random inputs and of games played by Bot through the inputs of the player. Bot games clear
+// lines, score and go up levels, so those paths are verified too. (Versus games are not recorded, so garbage is not)
+// - A replay does not depend on the preview count: a game recorded with 6 preview Tetrominoes must be valid when it is verified
+//   with 1, and the other way around
+// - A replay with a changed score must be rejected
+// - A replay with one changed input must be rejected at the first hash after that input, or where the changed game ends
+//
+// Usage: java ReplayVerifierTest (Exits with status 1 if a check fails)
+//**********************************************************************************************************************************
+
+import java.util.SplittableRandom;
+
+public class ReplayVerifierTest {
+
+    //Plays A Game With The Given Preview Count And Returns Its Replay. Inputs are random, or the moves of Bot if bot is true
+    static Replay record(Tetris.GameMode gameMode, int previewCount, long seed, boolean bot){
+        Tetris game = new Tetris(gameMode, seed);
+        game.logEvents = false;
+        game.recordReplays = true;
+        game.previewCount = previewCount;
+        game.resetGame();
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Bot player = new Bot();
+        int[] board = new int[Bot.HEIGHT];
+        int playedPiece = -1;
+        while (!game.gameOver) {
+            if (!bot) {
+                if (random.nextInt(4) == 0)
+                    game.input((byte) random.nextInt(Replay.INPUT_COUNT));
+            } else if (game.currentTetromino.spawned && game.getPieceCount() != playedPiece) {
+                playedPiece = game.getPieceCount();
+                Bot.readBoard(game, board);
+                if (player.choose(board, game.currentTetromino.shape))
+                    playInputs(game, player.bestRotation, player.bestX);
+            }
+            game.tick();
+            if (game.replay != null)
+                game.replay.tick(game);   //Like the game loop. Replay is finished by endGame()
+        }
+        return game.replay;
+    }
+
+    //Queues The Inputs That Move The Current Tetromino To The Placement Of Bot And Drop It
+    static void playInputs(Tetris game, int rotation, int x){
+        for (int i = 0; i < rotation; i++)
+            game.input(Replay.ROTATE_RIGHT);
+        for (int i = game.currentTetromino.x; i > x; i--)
+            game.input(Replay.LEFT);
+        for (int i = game.currentTetromino.x; i < x; i++)
+            game.input(Replay.RIGHT);
+        game.input(game.getGameMode().hardDrop ? Replay.HARD_DROP : Replay.SOFT_DROP);
+    }
+
+    //Returns The Frame Of The Input That Starts At The Position Of The Events, Or -1 If There Is No Input There
+    static int inputFrame(Replay replay, int inputPosition){
+        int position = 0;
+        int frame = 0;
+        while (position < replay.eventsLength) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = replay.events[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            frame += delta;
+            if (position == inputPosition)
+                return frame;
+            position++;
+        }
+        return -1;
+    }
+
+    //Plays The Inputs Of The Replay Until The Game Is Over Or The Given Frame. Returns The Last Frame
+    static int play(Replay replay, int lastFrame){
+        Tetris game = new Tetris(Tetris.GameMode.MODES[replay.gameModeId], replay.seed);
+        game.logEvents = false;
+        int position = 0;
+        int eventFrame = 0;
+        while (!game.gameOver && game.getFrameCount() < lastFrame) {
+            //Inputs of the frame. Every input is a frame delta (7 bits in a byte) and the input
+            while (position < replay.eventsLength) {
+                int delta = 0;
+                int shift = 0;
+                int start = position;
+                byte b;
+                do {
+                    b = replay.events[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                if (eventFrame + delta != game.getFrameCount()) {
+                    position = start;
+                    break;
+                }
+                eventFrame += delta;
+                game.input(replay.events[position++]);
+            }
+            game.tick();
+        }
+        return game.getFrameCount();
+    }
+
+    //Changes The First Move In The Middle Of The Replay Into The Other Direction. Returns Its Frame
+    static int changeInput(Replay replay){
+        for (int position = replay.eventsLength / 2; position < replay.eventsLength; position++) {
+            byte input = replay.events[position];
+            int frame = inputFrame(replay, position);
+            if (frame == -1 || (input != Replay.LEFT && input != Replay.RIGHT))
+                continue;
+            replay.events[position] = input == Replay.LEFT ? Replay.RIGHT : Replay.LEFT;
+            return frame;
+        }
+        return -1;
+    }
+
+    static int failures = 0;
+
+    static void check(boolean condition, String message){
+        System.out.println((condition ? "ok     " : "FAILED ") + message);
+        if (!condition)
+            failures++;
+    }
+
+    //Verifies The Replays Of A Game Recorded With 6 And 1 Preview Tetrominoes, And Changed Copies Of Them
+    static void checkGame(Tetris.GameMode gameMode, long seed, boolean bot){
+        String name = gameMode.name + (bot ? " bot" : " random") + " seed " + seed;
+
+        Replay deep = record(gameMode, Tetris.MAX_PREVIEW, seed, bot);
+        ReplayVerifier.Result result = ReplayVerifier.verify(name, deep, 1);
+        check(result.isValid(), "preview " + Tetris.MAX_PREVIEW + " verified with preview 1: " + result + ", lines " + deep.finalLines);
+        if (bot)
+            check(deep.finalLines > 0, name + " clears lines");
+
+        Replay shallow = record(gameMode, 1, seed, bot);
+        result = ReplayVerifier.verify(name, shallow, Tetris.MAX_PREVIEW);
+        check(result.isValid(), "preview 1 verified with preview " + Tetris.MAX_PREVIEW + ": " + result);
+
+        shallow.finalScore += 100;
+        check(!ReplayVerifier.verify(name, shallow, 1).isValid(), name + ": changed score is rejected");
+
+        //Changed input is found by the first state hash after it, or by the end of the game if it ends before that hash
+        if (bot) {
+            int frame = changeInput(deep);
+            int expected = play(deep, (frame / Replay.HASH_INTERVAL + 1) * Replay.HASH_INTERVAL);
+            result = ReplayVerifier.verify(name, deep, 1);
+            check(frame != -1 && expected < deep.finalFrame && result.divergenceFrame == expected,
+                    "input of frame " + frame + " is changed, expected divergence at " + expected + ": " + result);
+        }
+    }
+
+    public static void main(String[] args){
+        for (long seed = 1; seed <= 10; seed++)
+            checkGame(Tetris.GameMode.NEW, seed, false);
+        for (long seed = 1; seed <= 3; seed++) {
+            checkGame(Tetris.GameMode.SPRINT, seed, true);
+            checkGame(Tetris.GameMode.ULTRA, seed, true);
+            checkGame(Tetris.GameMode.CLASSIC, seed, true);
+        }
+
+        if (failures > 0) {
+            System.out.println(failures + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+}
@@ -0,0 +1,114 @@
+//**********************************************************************************************************************************
+// SpectatorClient.java
+//
+// Watches a game broadcast by SpectatorPublisher. Frames are applied to a copy of the game state, and the board is printed
+// as text once in every second.
+//
+// Usage: java SpectatorClient [host] [port]
+//**********************************************************************************************************************************
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+public class SpectatorClient {
+
+    static final int DEFAULT_PORT = 7778;
+
+    //Copy of the game state
+    final byte[] cells = new byte[SpectatorPublisher.WIDTH * SpectatorPublisher.HEIGHT];
+    final byte[] piece = new byte[SpectatorPublisher.PIECE_SIZE];
+    final int[] hud = new int[6];
+    boolean synced = false;   //Delta frames are ignored until the first keyframe
+    int frameNumber;
+
+    //Applies The Frame (Without Its Length) To The Game State
+    public void apply(ByteBuffer frame){
+        byte type = frame.get();
+        frameNumber = frame.getInt();
+
+        if (type == SpectatorPublisher.KEYFRAME) {
+            frame.get(cells);
+            readPiece(frame);
+            readHud(frame);
+            synced = true;
+            return;
+        }
+        if (!synced)
+            return;
+
+        for (int count = frame.get() & 0xFF; count > 0; count--) {
+            int index = frame.get() & 0xFF;
+            cells[index] = frame.get();
+        }
+        int flags = frame.get();
+        if ((flags & SpectatorPublisher.PIECE_CHANGED) != 0)
+            readPiece(frame);
+        if ((flags & SpectatorPublisher.HUD_CHANGED) != 0)
+            readHud(frame);
+    }
+
+    void readPiece(ByteBuffer frame){
+        frame.get(piece);
+    }
+
+    void readHud(ByteBuffer frame){
+        hud[0] = frame.getInt();
+        hud[1] = frame.getInt();
+        hud[2] = frame.getInt();
+        hud[3] = frame.get();
+        hud[4] = frame.get();
+        hud[5] = frame.get();
+    }
+
+    //Returns The Board As Text. Placed blocks are shown by their type, the falling Tetromino by '#'
+    public String boardText(){
+        StringBuilder text = new StringBuilder();
+        text.append("score: ").append(hud[0]).append("  level: ").append(hud[1]).append("  lines: ").append(hud[2]).append('\n');
+
+        Tetris.PieceShape shape = Tetris.SHAPES[piece[0]];
+        for (int y = 4; y < SpectatorPublisher.HEIGHT; y++) {
+            text.append('|');
+            for (int x = 0; x < SpectatorPublisher.WIDTH; x++) {
+                int cell = cells[y * SpectatorPublisher.WIDTH + x];
+                char c = cell == 0 ? ' ' : Tetris.shapeOf(cell - 1).type;
+
+                if (piece[4] == 1) {
+                    for (int[] block : shape.cells[piece[3]]) {
+                        if (piece[1] + block[0] == x && piece[2] + block[1] == y)
+                            c = '#';
+                    }
+                }
+                text.append(c);
+            }
+            text.append("|\n");
+        }
+        if ((hud[5] & SpectatorPublisher.STATE_OVER) != 0)
+            text.append("GAME OVER\n");
+        return text.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+        SpectatorClient client = new SpectatorClient();
+        ByteBuffer buffer = ByteBuffer.allocate(4 * SpectatorPublisher.MAX_FRAME_SIZE);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.remaining() >= 2 && buffer.remaining() >= 2 + (buffer.getShort(buffer.position()) & 0xFFFF)) {
+                    int end = buffer.position() + 2 + (buffer.getShort() & 0xFFFF);
+                    boolean keyframe = buffer.get(buffer.position()) == SpectatorPublisher.KEYFRAME;
+                    client.apply(buffer);
+                    buffer.position(end);
+
+                    if (keyframe)
+                        System.out.println(client.boardText());
+                }
+                buffer.compact();
+            }
+        }
+    }
+}
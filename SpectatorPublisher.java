@@ -0,0 +1,236 @@
+//**********************************************************************************************************************************
+// SpectatorPublisher.java
+//
+// Broadcasts a game to the spectators connected to a port. After every frame, only the changes are sent. (Changed cells of the
+// placed blocks, pose of the falling Tetromino and the score labels) Every KEYFRAME_INTERVAL frames the whole game is sent,
+// so new spectators could start watching and slow spectators could skip the frames that they could not receive.
+// A frame is encoded once into a direct buffer and the same buffer is written to every spectator. Sockets are never waited,
+// so the spectators could not slow down the game.
+//
+// =FRAME=
+// length (2 bytes, not included), type, frame number (4 bytes), then
+// KEYFRAME: 240 cells (0 is empty, others are shape id + 1. Row by row from the top), piece, hud
+// DELTA: changed cell count, (cell index, cell) pairs, flags (PIECE_CHANGED, HUD_CHANGED), piece and hud if they are changed
+// piece: shape id, x, y, rotation, spawned     hud: score, level, lines (4 bytes each), next id, hold id (-1 if none), state
+//**********************************************************************************************************************************
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SpectatorPublisher {
+
+    //Frame types
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+
+    //Flags of the delta frames
+    static final int PIECE_CHANGED = 1;
+    static final int HUD_CHANGED = 2;
+
+    //States in the hud
+    static final int STATE_OVER = 1;
+    static final int STATE_PAUSED = 2;
+
+    static final int KEYFRAME_INTERVAL = 60;   //One keyframe in every second
+    static final int WIDTH = Tetris.GRID_WIDTH;
+    static final int HEIGHT = Tetris.GRID_HEIGHT;
+    static final int PIECE_SIZE = 5;
+    static final int HUD_SIZE = 15;
+    static final int MAX_FRAME_SIZE = 2 + 1 + 4 + 1 + 2 * WIDTH * HEIGHT + 1 + PIECE_SIZE + HUD_SIZE;
+
+    final ServerSocketChannel serverChannel;
+    final ArrayList<Subscriber> subscribers = new ArrayList<>();
+    final ByteBuffer frame = ByteBuffer.allocateDirect(MAX_FRAME_SIZE);   //Last encoded frame. Written to every spectator
+
+    //Last published state
+    final byte[] cells = new byte[WIDTH * HEIGHT];
+    final byte[] piece = new byte[PIECE_SIZE];
+    final int[] hud = new int[6];
+
+    //State of the current frame
+    final byte[] newPiece = new byte[PIECE_SIZE];
+    final int[] newHud = new int[6];
+
+    int frameNumber = 0;
+
+    //A Connected Spectator
+    static class Subscriber {
+        final SocketChannel channel;
+        final ByteBuffer backlog = ByteBuffer.allocateDirect(MAX_FRAME_SIZE);   //Rest of a frame that the socket could not take
+        boolean waitingForKeyframe = true;   //Frames are skipped until the next keyframe
+
+        Subscriber(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    //Starts Listening To The Spectators
+    public SpectatorPublisher(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+    }
+
+    //Sends The Changes Of The Game Since The Last Frame To The Spectators. Called Once In Every Frame
+    public void publish(Tetris game){
+        acceptSubscribers();
+
+        boolean keyframe = frameNumber % KEYFRAME_INTERVAL == 0;
+        frameNumber++;
+
+        //Without spectators, the state is only stored by the keyframes
+        if (subscribers.isEmpty() && !keyframe)
+            return;
+
+        synchronized (game) {
+            if (!encode(game, keyframe))
+                return;   //Nothing is changed
+        }
+
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            if (!send(subscribers.get(i), keyframe)) {
+                close(subscribers.get(i));
+                subscribers.remove(i);
+            }
+        }
+    }
+
+    //Accepts The New Spectators. They Start With The Next Keyframe
+    void acceptSubscribers(){
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                subscribers.add(new Subscriber(channel));
+            }
+        } catch (IOException e) {
+            System.out.println("Spectator could not connect: " + e.getMessage());
+        }
+    }
+
+    //Encodes The Frame Into The Frame Buffer. Returns false If It Is A Delta Frame Without Any Change
+    boolean encode(Tetris game, boolean keyframe){
+        frame.clear();
+        frame.putShort((short) 0);   //Length is written at the end
+        frame.put(keyframe ? KEYFRAME : DELTA);
+        frame.putInt(frameNumber);
+
+        //Cells
+        int countPosition = frame.position();
+        int changed = 0;
+        if (!keyframe)
+            frame.put((byte) 0);   //Count is written after the cells
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int index = y * WIDTH + x;
+                byte cell = game.cells[index];   //Same codes (shape id + 1) and the same order
+
+                if (keyframe)
+                    frame.put(cell);
+                else if (cells[index] != cell) {
+                    frame.put((byte) index).put(cell);
+                    changed++;
+                }
+                cells[index] = cell;
+            }
+        }
+        if (!keyframe)
+            frame.put(countPosition, (byte) changed);
+
+        //Falling Tetromino
+        Tetris.Tetromino tetromino = game.currentTetromino;
+        newPiece[0] = (byte) tetromino.shape.id;
+        newPiece[1] = (byte) tetromino.x;
+        newPiece[2] = (byte) tetromino.y;
+        newPiece[3] = (byte) tetromino.rotation;
+        newPiece[4] = (byte) (tetromino.spawned ? 1 : 0);
+
+        //Labels and areas
+        newHud[0] = game.getScore();
+        newHud[1] = game.getLevel();
+        newHud[2] = game.getLines();
+        Tetris.PieceShape next = game.preview(0);
+        newHud[3] = next == null ? -1 : next.id;
+        newHud[4] = game.holdTetromino == null ? -1 : game.holdTetromino.id;
+        newHud[5] = (game.gameOver ? STATE_OVER : 0) | (game.gamePaused ? STATE_PAUSED : 0);
+
+        boolean pieceChanged = keyframe || !Arrays.equals(piece, newPiece);
+        boolean hudChanged = keyframe || !Arrays.equals(hud, newHud);
+        if (!keyframe) {
+            if (changed == 0 && !pieceChanged && !hudChanged)
+                return false;
+            frame.put((byte) ((pieceChanged ? PIECE_CHANGED : 0) | (hudChanged ? HUD_CHANGED : 0)));
+        }
+
+        if (pieceChanged) {
+            System.arraycopy(newPiece, 0, piece, 0, PIECE_SIZE);
+            frame.put(piece);
+        }
+        if (hudChanged) {
+            System.arraycopy(newHud, 0, hud, 0, hud.length);
+            frame.putInt(hud[0]).putInt(hud[1]).putInt(hud[2]);
+            frame.put((byte) hud[3]).put((byte) hud[4]).put((byte) hud[5]);
+        }
+
+        frame.putShort(0, (short) (frame.position() - 2));
+        frame.flip();
+        return true;
+    }
+
+    //Writes The Frame To The Spectator. Returns false If The Connection Is Closed
+    boolean send(Subscriber subscriber, boolean keyframe){
+        try {
+            //Rest of the previous frame is written first. If it is still not written, this frame is skipped
+            ByteBuffer backlog = subscriber.backlog;
+            if (backlog.position() > 0) {
+                backlog.flip();
+                subscriber.channel.write(backlog);
+                backlog.compact();
+                if (backlog.position() > 0) {
+                    subscriber.waitingForKeyframe = true;
+                    return true;
+                }
+            }
+
+            if (subscriber.waitingForKeyframe && !keyframe)
+                return true;
+            subscriber.waitingForKeyframe = false;
+
+            frame.rewind();
+            subscriber.channel.write(frame);
+            if (frame.hasRemaining())
+                backlog.put(frame);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    //Closes The Connection Of The Spectator
+    static void close(Subscriber subscriber){
+        try {
+            subscriber.channel.close();
+        } catch (IOException e) {
+            //Already closed
+        }
+    }
+
+    //Disconnects Every Spectator And Stops Listening
+    public void close(){
+        for (Subscriber subscriber : subscribers)
+            close(subscriber);
+        subscribers.clear();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            //Already closed
+        }
+    }
+}
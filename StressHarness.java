@@ -0,0 +1,228 @@
+//**********************************************************************************************************************************
+// StressHarness.java
+//
+// Drives a game without window with synthetic inputs from several threads at a high rate, like a keyboard that is pressed
+// thousands of times in a second, and checks the game after every frame:
+// - The falling Tetromino must be inside the grid and must not overlap the placed blocks
+// - Every placed block must have a known shape code, and the row masks must have the same blocks as the colors
+// - There must not be a full row that is not removed
+// - There must always be a falling Tetromino, unless the game is waiting its entry delay or it is over
+//
+// Inputs are a mix of moves, rotations, soft drops, holds and hard drops. They go through the input queue of the game like the
+// keys, so the harness measures the throughput of the queue and the time from queueing an input to applying it (percentiles).
+// Finished games are restarted, so it could run for hours. Exits with status 1 if an invariant is broken.
+//
+// Usage: java StressHarness [seconds] [inputs per second] [input threads] [game mode] [frames per second (0 = as fast as possible)]
+//                           [board width] [visible rows]
+//**********************************************************************************************************************************
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class StressHarness {
+
+    static final long REPORT_INTERVAL_NANOS = 10_000_000_000L;   //Prints the numbers in every 10 seconds
+    static final int MAX_PRINTED_VIOLATIONS = 20;
+
+    //Inputs and their weights in the mix
+    static final byte[] INPUT_MIX = {
+            Replay.LEFT, Replay.LEFT, Replay.LEFT, Replay.LEFT, Replay.RIGHT, Replay.RIGHT, Replay.RIGHT, Replay.RIGHT,
+            Replay.ROTATE_LEFT, Replay.ROTATE_LEFT, Replay.ROTATE_LEFT, Replay.ROTATE_RIGHT, Replay.ROTATE_RIGHT, Replay.ROTATE_RIGHT,
+            Replay.SOFT_DROP, Replay.SOFT_DROP_RELEASE, Replay.HOLD, Replay.HOLD, Replay.HARD_DROP, Replay.HARD_DROP};
+
+    //Latencies in 10 microsecond buckets up to 1 second. Only the game loop thread records them
+    static class Histogram {
+        static final int BUCKET_NANOS = 10_000;
+        final long[] buckets = new long[100_000];
+        long count = 0;
+        long max = 0;
+
+        void record(long nanos){
+            buckets[(int) Math.min(nanos / BUCKET_NANOS, buckets.length - 1)]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        //Returns The Upper Bound Of The Bucket That Contains The Percentile In Nanoseconds
+        long percentile(double percentile){
+            long target = (long) Math.ceil(count * percentile / 100);
+            long counted = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counted += buckets[i];
+                if (counted >= target && counted > 0)
+                    return Math.min((i + 1L) * BUCKET_NANOS, max);
+            }
+            return max;
+        }
+    }
+
+    final Tetris game;
+    final int inputsPerSecond;
+    final int threadCount;
+    final double framesPerSecond;
+    final Histogram latencies = new Histogram();
+    final AtomicLong sentInputs = new AtomicLong();
+    volatile boolean running = true;
+
+    long frames = 0;
+    long games = 0;
+    long pieces = 0;   //Tetrominoes of the finished games
+    long violations = 0;
+    final List<String> violationMessages = new ArrayList<>();
+
+    public StressHarness(Tetris.GameMode gameMode, int inputsPerSecond, int threadCount, double framesPerSecond, int width, int visibleRows) {
+        this.inputsPerSecond = inputsPerSecond;
+        this.threadCount = threadCount;
+        this.framesPerSecond = framesPerSecond;
+
+        game = new Tetris(gameMode, System.nanoTime(), width, visibleRows, Tetris.HIDDEN_ROWS);
+        game.logEvents = false;
+        game.inputLatency = latencies::record;   //Called by tick(), so only by the game loop thread
+    }
+
+    //Sends Random Inputs At Its Share Of The Rate Until The Harness Stops
+    void sendInputs(long seed){
+        SplittableRandom random = new SplittableRandom(seed);
+        double rate = (double) inputsPerSecond / threadCount;
+        long start = System.nanoTime();
+        long sent = 0;
+
+        //Sends the inputs that are due and sleeps a little. Parking is not exact, so late inputs are sent together
+        while (running) {
+            long due = (long) ((System.nanoTime() - start) * rate / 1e9);
+            for (long i = sent; i < due; i++)
+                game.input(INPUT_MIX[random.nextInt(INPUT_MIX.length)]);
+            if (due > sent) {
+                sentInputs.addAndGet(due - sent);
+                sent = due;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    //Runs The Game Loop For The Given Time. Returns The Number Of Violations
+    public long run(long seconds) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            long seed = System.nanoTime() + i;
+            Thread thread = new Thread(() -> sendInputs(seed), "Input " + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long nextReport = start + REPORT_INTERVAL_NANOS;
+        double frameNanos = framesPerSecond > 0 ? 1e9 / framesPerSecond : 0;
+
+        while (System.nanoTime() < end) {
+            if (frameNanos > 0) {
+                long remaining = start + (long) (frames * frameNanos) - System.nanoTime();
+                if (remaining > 0)
+                    LockSupport.parkNanos(remaining);
+            }
+
+            synchronized (game) {
+                game.tick();
+                frames++;
+                check();
+                if (game.gameOver) {
+                    games++;
+                    pieces += game.getPieceCount();
+                    game.resetGame();
+                }
+            }
+
+            if (System.nanoTime() >= nextReport) {
+                report(System.nanoTime() - start);
+                nextReport += REPORT_INTERVAL_NANOS;
+            }
+        }
+
+        running = false;
+        for (Thread thread : threads)
+            thread.join();
+        report(System.nanoTime() - start);
+        return violations;
+    }
+
+    //Checks The Invariants Of The Game After A Frame
+    void check(){
+        Tetris.Tetromino tetromino = game.currentTetromino;
+        byte[] cells = game.cells;
+        int width = game.gridWidth;
+        int height = game.gridHeight;
+
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] < 0 || cells[i] > Tetris.GARBAGE.id + 1)
+                violation("block " + (i % width) + "," + (i / width) + " has an unknown code " + cells[i]);
+        }
+
+        if (tetromino.shape == null)
+            violation("current Tetromino has no shape");
+        else if (tetromino.spawned) {
+            for (int[] cell : tetromino.shape.cells[tetromino.rotation]) {
+                int x = tetromino.x + cell[0];
+                int y = tetromino.y + cell[1];
+                if (x < 0 || x >= width || y < 0 || y >= height)
+                    violation("Tetromino " + tetromino.shape.type + " is outside the grid at " + x + "," + y);
+                else if (cells[y * width + x] != 0)
+                    violation("Tetromino " + tetromino.shape.type + " overlaps a placed block at " + x + "," + y);
+            }
+        } else if (!game.gameOver && game.getEntryDelay() == 0)
+            violation("current Tetromino is lost (not spawned and no entry delay)");
+
+        for (int y = 0; y < height; y++) {
+            int filled = 0;
+            long row = 0;
+            for (int x = 0; x < width; x++) {
+                if (cells[y * width + x] != 0) {
+                    filled++;
+                    row |= 1L << x;
+                }
+            }
+            if (row != game.rows[y])
+                violation("mask of row " + y + " is " + Long.toBinaryString(game.rows[y]) + ", blocks are " + Long.toBinaryString(row));
+            if (filled == width)
+                violation("row " + y + " is full but not removed");
+        }
+    }
+
+    void violation(String message){
+        violations++;
+        if (violationMessages.size() < MAX_PRINTED_VIOLATIONS) {
+            String text = "Frame " + game.getFrameCount() + " of game " + (games + 1) + ": " + message;
+            violationMessages.add(text);
+            System.out.println("VIOLATION " + text);
+        }
+    }
+
+    void report(long elapsedNanos){
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%.0f s: %d inputs applied (%.0f per second), %d dropped, latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                seconds, latencies.count, latencies.count / seconds, game.droppedInputs,
+                latencies.percentile(50) / 1e6, latencies.percentile(99) / 1e6, latencies.percentile(99.9) / 1e6, latencies.max / 1e6);
+        System.out.printf("      %d frames (%.0f per second), %d games, %d pieces, %d violations%n",
+                frames, frames / seconds, games, pieces + game.getPieceCount(), violations);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        int inputsPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        Tetris.GameMode gameMode = Tetris.GameMode.forName(args.length > 3 ? args[3] : Tetris.DEFAULT_GAME_MODE);
+        double framesPerSecond = args.length > 4 ? Double.parseDouble(args[4]) : gameMode.frameRate;
+        int width = args.length > 5 ? Integer.parseInt(args[5]) : Tetris.GRID_WIDTH;
+        int visibleRows = args.length > 6 ? Integer.parseInt(args[6]) : Tetris.GRID_HEIGHT - Tetris.HIDDEN_ROWS;
+
+        StressHarness harness = new StressHarness(gameMode, inputsPerSecond, threadCount, framesPerSecond, width, visibleRows);
+        long violations = harness.run(seconds);
+        System.out.println(harness.sentInputs.get() + " inputs sent by " + threadCount + " threads, " + violations + " violations");
+        if (violations > 0)
+            System.exit(1);
+    }
+}
@@ -1,70 +1,249 @@
 //**********************************************************************************************************************************
 // Tetris.java         Author:Ali Berk Karaarslan     Date:05.10.2023
 //
-// To change the game mode, set "gameMode" variable as "new" or "classic".
+// To change the game mode, set "DEFAULT_GAME_MODE" variable as "new" or "classic" (or give it as the first program argument).
 // "classic" -> Original NES mode. There is no hold and hard drop mechanics. Also it is not shows where the tetromino will fall. 
 // "new" -> Current Tetris mode. Allows to hold and hard drop mechanics. Also shows where the tetromino will fall.
+//          Tetrominoes come in bags of the 7 shapes in random order.
+// "sprint", "ultra" and "marathon" -> "new" mode with a goal. 40 lines, 3 minutes and 150 lines.
 //
 // =CONTROLS=
 // Movement: Left/Right Arrow Keys         Rotate Left: Z
 // Soft Drop: Down Arrow Key               Rotate Right: X/Up Arrow Key
 // Hard Drop: Space                        Pause: Escape
-// Hold: C
+// Hold: C                                Bot: B
+// Performance Overlay: F3
+//
+// "-Dtetris.preview=N" shows the next 1 to 6 Tetrominoes.
+// "-Dtetris.width=N", "-Dtetris.height=N" and "-Dtetris.hiddenRows=N" change the board (4 to 64 columns).
+//
+// =VERSUS=
+// Start "VersusServer" and give its address as the second program argument (for ex. "new localhost:7777").
+// Lines removed at once are sent to the opponents as garbage rows. Last player standing wins the match.
 //
 //**********************************************************************************************************************************
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.ArrayDeque;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 public class Tetris {
 
     //Default Sizes
     int screenWidth = 900;
     int screenHeight = 594;
-    int tetrominoSize = 20;
+    int tetrominoSize = 20;   //Recalculated from the panel size. The default window is 45 blocks wide and 29.7 blocks high
 
     //Parameters of the game
-    private String gameMode = "new";  //Choose game mode. "new" or "classic"
+    static final String DEFAULT_GAME_MODE = "new";  //Choose game mode. "new", "classic", "sprint", "ultra" or "marathon"
+    private final GameMode gameMode;
     private int score = 0;
     private int level = 0;
     private int lines = 0;
-    private double gameSpeed = Math.pow( (0.8-((level)*0.007)) , level );
+
+    //Gravity of the game. Measured in cells per frame and accumulated every frame, so fractions of a row are not lost
+    static final double FRAME_RATE = 60;   //Frames per second ("classic" mode runs at the NES frame rate)
+    static final double MAX_GRAVITY = 20;   //20G. Tetromino falls through the whole play area in one frame
+    static final double SOFT_DROP_GRAVITY = 1 / (0.03 * FRAME_RATE);   //Soft drop moves one block in every 0.03 seconds
+    private double gravityAccumulator = 0;   //Rows that the current Tetromino has fallen but not moved yet
+    private boolean softDropping = false;
+
+    //Lock delay. Runs while the Tetromino is on the ground. Moves and rotations restart it (up to LOCK_RESET_LIMIT times),
+    //reaching a lower row restarts it and the limit. It is counted by tick(), so locking does not depend on thread timing.
+    static final int LOCK_DELAY_FRAMES = (int) (0.5 * FRAME_RATE);   //Gives 0.5 seconds to move when Tetromino reached bottom
+    static final int LOCK_RESET_LIMIT = 15;
+    private int lockFrames = 0;   //Frames that the current Tetromino has stayed on the ground
+    private int lockResets = 0;   //Lock delay restarts used by the current Tetromino
+    private int lowestRow = 0;   //Lowest y coordinate that the current Tetromino has reached
+    private int gravityFrames = 0;   //Frames since the current Tetromino moved down. Used by frame counted gravity ("classic" mode)
+    private int entryDelay = 0;   //Frames left until the next Tetromino spawns (Entry delay and line clear delay)
+    private int frameCount = 0;   //Frames played since the game started
+    private GameEvents.Spawn spawnEvent = null;   //Started when a Tetromino is locked and committed when the next one spawns
 
     boolean gameOver = false;
     boolean gamePaused = false;
     boolean holdUsed = false;   //Only one hold operation could be used when Tetromino is falling (Resets after placed)
+    FinesseAnalyzer finesse = null;   //Compares the inputs of the player with the least inputs. Games with window have it
+    Replay replay = null;   //Inputs and state hashes of the current game. Continued games and bot games are not recorded
+    boolean recordReplays = false;   //Records every new game. Games with window record them, except the versus games
+    Bot autoPlayer = null;   //Plays the game instead of the player. Turned on and off with B key
+    boolean logEvents = true;   //Prints the strikes and the game over. Turned off when thousands of games are played at once
+
+    //Inputs given by other threads (keyboard). They are queued and applied by tick(), so only the game loop changes the game
+    static final int INPUT_QUEUE_CAPACITY = 256;   //Power of two. Inputs are dropped when it is full
+    private final byte[] inputQueue = new byte[INPUT_QUEUE_CAPACITY];
+    private final long[] inputQueueNanos = new long[INPUT_QUEUE_CAPACITY];   //Time that each input is queued. Only with inputLatency
+    private final boolean[] inputQueueRepeated = new boolean[INPUT_QUEUE_CAPACITY];   //Input is the key repeat of a held key
+    private int inputQueueHead = 0;
+    private int inputQueueSize = 0;
+    int droppedInputs = 0;
+    LongConsumer inputLatency = null;   //Receives the nanoseconds from queueing to applying each input. Used by StressHarness and F3 overlay
 
     //Colors of the Tetrominoes
-    Color I_PieceColor = Color.CYAN;
-    Color J_PieceColor = Color.BLUE;
-    Color L_PieceColor = Color.ORANGE;
-    Color O_PieceColor = Color.YELLOW;
-    Color S_PieceColor = Color.GREEN;
-    Color T_PieceColor = Color.MAGENTA;
-    Color Z_PieceColor = Color.RED;
+    static final Color I_PieceColor = Color.CYAN;
+    static final Color J_PieceColor = Color.BLUE;
+    static final Color L_PieceColor = Color.ORANGE;
+    static final Color O_PieceColor = Color.YELLOW;
+    static final Color S_PieceColor = Color.GREEN;
+    static final Color T_PieceColor = Color.MAGENTA;
+    static final Color Z_PieceColor = Color.RED;
 
     GamePanel gamePanel;
     MainFrame frame;
-    Tetromino[][] gameGrid = new Tetromino[10][24];   //Indexes corresponded to coordinate system. That means, there is 10 blocks in x-axis and 24 blocks in y-axis
-
-    Tetromino currentTetromino;  //Stores the current falling Tetromino
-    char nextTetromino = 'N';   //Stores the type of the next Tetromino. 'N' refers to null.
-    char holdTetromino = 'N';   //Stores the type of the hold Tetromino. 'N' refers to null.
-
+    Thread gameLoop;   //Advances the game one frame at a time (Moves the current Tetromino, locks it and spawns the next one)
+
+    //Startup. "-Dtetris.startupTiming=true" prints the time until the first frame is painted.
+    //"-Dtetris.exitAfterFirstFrame=true" closes the program after the first frame. (Training run of the class data sharing archive)
+    static final long START_NANOS = System.nanoTime();   //Tetris class is loaded just before main() is called
+
+    //Standard board. 10 blocks in x-axis and 24 blocks in y-axis, the top 4 rows are hidden above the play area.
+    //Bots, VecEnv, finesse, replays and spectators are made for it
+    static final int GRID_WIDTH = 10;
+    static final int GRID_HEIGHT = 24;
+    static final int HIDDEN_ROWS = 4;
+    static final int MAX_GRID_WIDTH = 64;   //Bits of a row mask
+    static final int MAX_GRID_HEIGHT = 127;   //Coordinates are saved as bytes
+
+    //Board of this game. Games with window could change it with "-Dtetris.width=N" (4 to 64 columns), "-Dtetris.height=N"
+    //(visible rows) and "-Dtetris.hiddenRows=N" (rows above the play area, at least 2. Tetrominoes spawn there)
+    int gridWidth;
+    int gridHeight;   //Visible and hidden rows
+    int hiddenRows;
+    int spawnX, spawnY;   //Spawn position of the 4x4 box of every Tetromino. In the middle of the top hidden rows
+    long fullRow;   //Mask of a row that has every column
+
+    //Placed blocks. Each row is a bit mask (bit x of rows[y] is the block in column x), so collisions and full rows are checked
+    //a row at a time. Colors are kept row by row in cells (cells[y * gridWidth + x]), one byte for each block: 0 is empty,
+    //others are the id of the shape it belonged to + 1. The falling Tetromino is not stored here, it is painted over them.
+    long[] rows;
+    byte[] cells;
+
+    final Tetromino currentTetromino = new Tetromino();  //Stores the current falling Tetromino. Reused for every Tetromino of the game
+    PieceShape holdTetromino = null;   //Stores the shape of the hold Tetromino
+
+    static final String[] STRIKE_NAMES = {"Single", "Double", "Triple", "TETRIS!"};
     ArrayList<Integer> strikes = new ArrayList<>();   //Stores the index of the removed rows when strike happens
-    ArrayDeque<Tetromino> tetrominoes = new ArrayDeque<>();   //Tetrominoes Queue. Helps to show next Tetromino
+
+    //Upcoming Tetrominoes. Shape ids in a ring buffer, refilled one bag (7 Tetrominoes) at a time when the preview runs out
+    static final int MAX_PREVIEW = 6;
+    static final int QUEUE_CAPACITY = 16;   //Power of two. Holds the preview and one more bag
+    int previewCount = Math.max(1, Math.min(MAX_PREVIEW, Integer.getInteger("tetris.preview", 1)));   //Shown Tetrominoes
+    private final byte[] queue = new byte[QUEUE_CAPACITY];
+    private int queueHead = 0;   //Index of the next Tetromino
+    private int queueSize = 0;
+    long randomState = System.nanoTime();   //State of the Tetromino generator. It is saved with the game
+    static final long RANDOM_STEP = 0x9E3779B97F4A7C15L;   //Added to randomState for every random number
+    private int pieceCount = 0;   //Tetrominoes spawned since the game started
+
+    //Versus match. Lines removed at once are sent to the opponents as garbage rows
+    static final int[] GARBAGE_LINES = {0, 0, 1, 2, 4};   //Garbage rows sent for removing 0, 1, 2, 3 and 4 lines
+    static final int GARBAGE_HOLES = 256;   //Hole is sent in 1/256 of the board width, so players could have different widths
+    Versus versus = null;   //Opponents of the match (Match server or a local match). null when the game is not a versus match
+    private int pendingGarbage = 0;   //Received garbage rows. They are added when a Tetromino is placed without removing a line
+    private int garbageHole = 0;   //Empty column of the received garbage rows
+
+    //Live broadcast of the game. Started when a port is given ("-Dtetris.spectatorPort=7778")
+    SpectatorPublisher spectators = null;
+
+    //Saved game. Written when the game is paused or closed and restored when the program starts
+    static final Path SAVE_FILE = Paths.get(System.getProperty("user.home"), ".tetris", "save.bin");
+    static final int SNAPSHOT_MAGIC = 0x54525336;   //"TRS6"
+    private ByteBuffer snapshotBuffer;   //Reused by copy(). Allocated with the board
+
+    Leaderboard leaderboard = null;   //High scores of the game mode. Opened when the first game is over. Used by STORAGE
+
+    //Writes the files of the finished games (score, replay) in order, so the game loop does not wait for the disk
+    static final ExecutorService STORAGE = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Storage");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     //Constructor method
     public Tetris(){
+        this(GameMode.forName(DEFAULT_GAME_MODE));
+    }
+
+    //Creates A Game Of The Given Mode
+    public Tetris(GameMode gameMode){
+        this.gameMode = gameMode;
+        createBoardFromProperties();
+        finesse = standardBoard() ? new FinesseAnalyzer() : null;
+        recordReplays = true;
         frame = new MainFrame();
         frame.getContentPane();
     }
 
+    //Creates A Versus Game. It Starts When The Server Finds The Opponents
+    public Tetris(GameMode gameMode, Versus versus){
+        this.gameMode = gameMode;
+        this.versus = versus;
+        createBoardFromProperties();
+        finesse = standardBoard() ? new FinesseAnalyzer() : null;
+        frame = new MainFrame();
+        frame.getContentPane();
+    }
+
+    //Creates A Game Without Window And Threads. It Only Advances When tick() Is Called. (Used For Searching And Testing)
+    public Tetris(GameMode gameMode, long seed){
+        this(gameMode, seed, GRID_WIDTH, GRID_HEIGHT - HIDDEN_ROWS, HIDDEN_ROWS);
+    }
+
+    //Creates A Game Without Window On A Board Of The Given Size
+    public Tetris(GameMode gameMode, long seed, int width, int visibleRows, int hiddenRows){
+        this.gameMode = gameMode;
+        createBoard(width, visibleRows, hiddenRows);
+        randomState = seed;
+        generateRandomTetromino();
+    }
+
+    //Creates An Empty Board Of The Given Size. Throws IllegalArgumentException If The Size Is Not Supported
+    void createBoard(int width, int visibleRows, int hiddenRows){
+        if (width < 4 || width > MAX_GRID_WIDTH)
+            throw new IllegalArgumentException("Board width must be between 4 and " + MAX_GRID_WIDTH + ": " + width);
+        if (visibleRows < 4 || hiddenRows < 2 || visibleRows + hiddenRows > MAX_GRID_HEIGHT)
+            throw new IllegalArgumentException("Board must have at least 4 visible and 2 hidden rows, and at most " + MAX_GRID_HEIGHT
+                    + " rows: " + visibleRows + " visible, " + hiddenRows + " hidden");
+
+        gridWidth = width;
+        gridHeight = visibleRows + hiddenRows;
+        this.hiddenRows = hiddenRows;
+        spawnX = (width - 4) / 2;
+        spawnY = hiddenRows - 2;
+        fullRow = width == 64 ? -1L : (1L << width) - 1;
+        rows = new long[gridHeight];
+        cells = new byte[width * gridHeight];
+        snapshotBuffer = ByteBuffer.allocate(snapshotSize());
+    }
+
+    //Creates The Board That Is Given With The System Properties, Or The Standard Board
+    void createBoardFromProperties(){
+        createBoard(Integer.getInteger("tetris.width", GRID_WIDTH), Integer.getInteger("tetris.height", GRID_HEIGHT - HIDDEN_ROWS),
+                Integer.getInteger("tetris.hiddenRows", HIDDEN_ROWS));
+    }
+
+    //Checks If The Board Has The Standard Size. Bots, finesse, replays and spectators are only used with it
+    public boolean standardBoard(){
+        return gridWidth == GRID_WIDTH && gridHeight == GRID_HEIGHT && hiddenRows == HIDDEN_ROWS;
+    }
+
     //Main Frame Of The Program
     class MainFrame extends JFrame {
 
@@ -80,8 +259,50 @@ public class Tetris {
             pack();
             setLocationRelativeTo(null);
 
-            generateRandomTetromino();  //Generating the first Tetromino of the game
+            //Waits for the opponents. There is no Tetromino until the server starts the match
+            if (versus != null) {
+                versus.join(gameMode);
+                System.out.println("Waiting for the opponents");
+            }
+            //Continues the saved game if there is one. It starts paused
+            else if (loadGame()) {
+                gamePaused = true;
+                gamePanel.showPaused();
+                gamePanel.updateLabels();
+            }
+            else {
+                startReplay();
+                generateRandomTetromino();  //Generating the first Tetromino of the game
+            }
+
+            //Saves the game before closing
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    saveGame();
+                    //Waits the files that are not written yet
+                    STORAGE.shutdown();
+                    try {
+                        STORAGE.awaitTermination(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            });
             setVisible(true);
+
+            //Broadcasts the game to the spectators
+            Integer spectatorPort = Integer.getInteger("tetris.spectatorPort");
+            if (spectatorPort != null && !standardBoard())
+                System.out.println("Spectators could not be started: Only the standard board is broadcast");
+            else if (spectatorPort != null) {
+                try {
+                    spectators = new SpectatorPublisher(spectatorPort);
+                } catch (IOException e) {
+                    System.out.println("Spectators could not be started: " + e.getMessage());
+                }
+            }
+
+            //Game loop and screen refresher are started when the first frame is painted
         }
     }
 
@@ -93,10 +314,10 @@ public class Tetris {
         //These coordinates contain the borders.
         
         //Coordinates of the play area
-        int playAreaX1 = (screenWidth-(12*tetrominoSize))/2;
-        int playAreaY1 = (screenHeight-(22*tetrominoSize))/2;
-        int playAreaWidth = (12*tetrominoSize);
-        int playAreaHeight = (22*tetrominoSize);
+        int playAreaX1 = (screenWidth-((gridWidth+2)*tetrominoSize))/2;
+        int playAreaY1 = (screenHeight-((gridHeight-hiddenRows+2)*tetrominoSize))/2;
+        int playAreaWidth = ((gridWidth+2)*tetrominoSize);
+        int playAreaHeight = ((gridHeight-hiddenRows+2)*tetrominoSize);
 
         //Coordinates of the next area
         int nextAreaWidth = 6*tetrominoSize;
@@ -104,12 +325,36 @@ public class Tetris {
         int nextAreaX1 = playAreaX1 + playAreaWidth + (tetrominoSize);
         int nextAreaY1 = (playAreaY1 + (playAreaHeight-nextAreaHeight)/6);
 
+        //Coordinates of the queue area. Rest of the preview (after the next Tetromino) is shown there with half size blocks
+        static final int QUEUE_SLOT_HEIGHT = 5;   //Height of a Tetromino in the queue area in half blocks
+        int queueAreaWidth = 3*tetrominoSize;
+        int queueAreaHeight = (previewCount-1)*QUEUE_SLOT_HEIGHT*tetrominoSize/2;
+        int queueAreaX1 = nextAreaX1 + nextAreaWidth + tetrominoSize/2;
+        int queueAreaY1 = nextAreaY1;
+
         //Coordinates of the hold area
         int holdAreaWidth = 6*tetrominoSize;
         int holdAreaHeight = 6*tetrominoSize;
         int holdAreaX1 = playAreaX1 - holdAreaWidth - (tetrominoSize);
         int holdAreaY1 = (playAreaY1 + (playAreaHeight-holdAreaHeight)/6);
 
+        //Pre-rendered sprites. They are only rebuilt when tetrominoSize changes, so painting a block is a single image blit
+        int spriteSize = 0;   //tetrominoSize the sprites were rendered for
+        GraphicsConfiguration spriteConfiguration = null;   //Screen the sprites are compatible with
+        BufferedImage[] blockSprites = new BufferedImage[SHAPES.length + 1];   //Filled blocks with outline. Indexed by PieceShape.id
+        BufferedImage[] ghostSprites = new BufferedImage[SHAPES.length + 1];   //Hologram blocks. Indexed by PieceShape.id
+        BufferedImage[] smallBlockSprites = new BufferedImage[SHAPES.length + 1];   //Half size blocks of the queue area
+        BufferedImage playAreaSprite;   //Play area with its borders and grid lines
+
+        final PerformanceOverlay performance = new PerformanceOverlay();   //Frame times, input latency and memory. Shown with F3
+
+        //Fonts of the labels. They are only recreated when tetrominoSize changes
+        Font titleFont;
+        Font countFont;
+        Font strikeFont;
+        Font gameOverFont;
+        Font gamePausedFont;
+
         //Labels
         JLabel nextLabel;
         Dimension nextLabelSize;
@@ -137,6 +382,7 @@ public class Tetris {
         JLabel strikeCountLabel;
         Dimension strikeCountLabelSize;
 
+        //Created when they are shown first. Hold label is not created if the game mode has no hold
         JLabel gameOverLabel;
         Dimension gameOverLabelSize;
         JLabel pressEnterLabel;
@@ -145,6 +391,9 @@ public class Tetris {
         JLabel gamePausedLabel;
         Dimension gamePausedLabelSize;
 
+        boolean firstFramePainted = false;
+        final boolean[] heldKeys = new boolean[256];   //Keys that are pressed and not released yet. Indexed by key code
+
         //Constructor Method
         public GamePanel(){
             setPreferredSize(new Dimension(screenWidth,screenHeight));
@@ -161,12 +410,8 @@ public class Tetris {
             linesCountLabel = new JLabel(""+lines);
             strikeLabel = new JLabel("       ");
             strikeCountLabel = new JLabel("       ");
-            holdLabel = new JLabel(("HOLD"));
-            gameOverLabel = new JLabel("GAME OVER");
-            pressEnterLabel = new JLabel("PRESS ENTER TO CONTINUE");
-            gamePausedLabel = new JLabel("GAME PAUSED");
 
-            updateLabels();
+            //Areas, fonts and sprites are calculated by the first paint. (Size of the screen is not known before)
 
             add(nextLabel);
             add(scoreLabel);
@@ -178,8 +423,28 @@ public class Tetris {
             add(strikeLabel);
             add(strikeCountLabel);
 
-            if(!gameMode.equals("classic"))
+            if(gameMode.hold) {
+                holdLabel = new JLabel("HOLD");
                 add(holdLabel);
+            }
+        }
+
+        //Starts The Threads When The First Frame Is Painted, So Nothing Else Runs Until The Game Is Seen
+        public void firstFrame(){
+            if (Boolean.getBoolean("tetris.startupTiming")) {
+                long now = System.currentTimeMillis();
+                String fromStart = ProcessHandle.current().info().startInstant()
+                        .map(start -> (now - start.toEpochMilli()) + " ms").orElse("unknown time");
+                System.out.println("First frame: " + fromStart + " after the program started, "
+                        + (System.nanoTime() - START_NANOS) / 1_000_000 + " ms after main");
+            }
+            if (Boolean.getBoolean("tetris.exitAfterFirstFrame")) {
+                SwingUtilities.invokeLater(() -> System.exit(0));
+                return;
+            }
+
+            gameLoop = new Thread(Tetris.this::runGameLoop, "Game Loop");
+            gameLoop.start();
 
             //Refreshes the game screen every 0.005 seconds
             Thread screenRefresher = new Thread(() -> {
@@ -236,80 +501,235 @@ public class Tetris {
         //Updates All The Labels
         public void updateLabels(){
 
-            nextLabel.setFont(new Font("Monospaced", Font.BOLD, (12*tetrominoSize)/10));
+            scoreCountLabel.setText(""+score);
+            levelCountLabel.setText(""+level);
+            linesCountLabel.setText(""+lines);
+
+            layoutLabels();
+
+            scoreCountLabel.paintImmediately(scoreCountLabel.getVisibleRect());
+            levelCountLabel.paintImmediately(levelCountLabel.getVisibleRect());
+            linesCountLabel.paintImmediately(linesCountLabel.getVisibleRect());
+        }
+
+        /* Labels That Are Created When They Are Shown First */
+        //Shows The Game Over Labels
+        public void showGameOver(){
+            if (gameOverLabel == null) {
+                gameOverLabel = new JLabel("GAME OVER");
+                pressEnterLabel = new JLabel("PRESS ENTER TO CONTINUE");
+                layoutLabels();
+            }
+            add(gameOverLabel);
+            add(pressEnterLabel);
+        }
+
+        //Removes The Game Over Labels
+        public void hideGameOver(){
+            if (gameOverLabel != null) {
+                remove(gameOverLabel);
+                remove(pressEnterLabel);
+            }
+        }
+
+        //Shows The Game Paused Label
+        public void showPaused(){
+            if (gamePausedLabel == null) {
+                gamePausedLabel = new JLabel("GAME PAUSED");
+                layoutLabels();
+            }
+            add(gamePausedLabel);
+        }
+
+        //Removes The Game Paused Label
+        public void hidePaused(){
+            if (gamePausedLabel != null)
+                remove(gamePausedLabel);
+        }
+
+        //Sets The Fonts And Positions Of All The Labels Due To The Current Areas
+        public void layoutLabels(){
+
+            nextLabel.setFont(titleFont);
             nextLabel.setForeground(Color.WHITE);
             nextLabelSize = nextLabel.getPreferredSize();
             nextLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-nextLabelSize.getWidth())/2), (int) (nextAreaY1-(1.5* tetrominoSize)), nextLabelSize.width + 50, nextLabelSize.height);
 
-            holdLabel.setFont(new Font("Monospaced", Font.BOLD, (12*tetrominoSize)/10));
-            holdLabel.setForeground(Color.WHITE);
-            holdLabelSize = holdLabel.getPreferredSize();
-            holdLabel.setBounds((int) (holdAreaX1+(holdAreaWidth-holdLabelSize.getWidth())/2), (int) (holdAreaY1-(1.5* tetrominoSize)), holdLabelSize.width + 50, holdLabelSize.height);
+            if (holdLabel != null) {
+                holdLabel.setFont(titleFont);
+                holdLabel.setForeground(Color.WHITE);
+                holdLabelSize = holdLabel.getPreferredSize();
+                holdLabel.setBounds((int) (holdAreaX1+(holdAreaWidth-holdLabelSize.getWidth())/2), (int) (holdAreaY1-(1.5* tetrominoSize)), holdLabelSize.width + 50, holdLabelSize.height);
+            }
 
-            scoreLabel.setFont(new Font("Monospaced", Font.BOLD, (12*tetrominoSize)/10));
+            scoreLabel.setFont(titleFont);
             scoreLabel.setForeground(Color.WHITE);
             scoreLabelSize = scoreLabel.getPreferredSize();
             scoreLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-scoreLabelSize.getWidth())/2), (int) (nextAreaY1+nextAreaHeight + (tetrominoSize)), scoreLabelSize.width + 50, scoreLabelSize.height);
 
-            scoreCountLabel.setText(""+score);
-            scoreCountLabel.setFont(new Font("Monospaced", Font.BOLD, (11*tetrominoSize)/10));
+            scoreCountLabel.setFont(countFont);
             scoreCountLabel.setForeground(Color.WHITE);
             scoreCountLabelSize = scoreCountLabel.getPreferredSize();
             scoreCountLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-scoreCountLabelSize.getWidth())/2), (int) (nextAreaY1+nextAreaHeight + (2.5*tetrominoSize)), scoreCountLabelSize.width + 50, scoreCountLabelSize.height);
-            scoreCountLabel.paintImmediately(scoreCountLabel.getVisibleRect());
 
-            levelLabel.setFont(new Font("Monospaced", Font.BOLD, (12*tetrominoSize)/10));
+            levelLabel.setFont(titleFont);
             levelLabel.setForeground(Color.WHITE);
             levelLabelSize = levelLabel.getPreferredSize();
             levelLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-levelLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (5* tetrominoSize)), levelLabelSize.width+ 50, levelLabelSize.height);
 
-            levelCountLabel.setText(""+level);
-            levelCountLabel.setFont(new Font("Monospaced", Font.BOLD, (11*tetrominoSize)/10));
+            levelCountLabel.setFont(countFont);
             levelCountLabel.setForeground(Color.WHITE);
             levelCountLabelSize = levelCountLabel.getPreferredSize();
             levelCountLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-levelCountLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (6.5* tetrominoSize)), levelCountLabelSize.width+ 50, levelCountLabelSize.height);
-            levelCountLabel.paintImmediately(levelCountLabel.getVisibleRect());
 
-            linesLabel.setFont(new Font("Monospaced", Font.BOLD, (12*tetrominoSize)/10));
+            linesLabel.setFont(titleFont);
             linesLabel.setForeground(Color.WHITE);
             linesLabelSize = linesLabel.getPreferredSize();
             linesLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-linesLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (9* tetrominoSize)), linesLabelSize.width+ 50, linesLabelSize.height);
 
-            linesCountLabel.setText(""+lines);
-            linesCountLabel.setFont(new Font("Monospaced", Font.BOLD, (11*tetrominoSize)/10));
+            linesCountLabel.setFont(countFont);
             linesCountLabel.setForeground(Color.WHITE);
             linesCountLabelSize = linesCountLabel.getPreferredSize();
             linesCountLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-linesCountLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (10.5* tetrominoSize)), linesCountLabelSize.width+ 50, linesCountLabelSize.height);
-            linesCountLabel.paintImmediately(linesCountLabel.getVisibleRect());
 
-            strikeLabel.setFont(new Font("Monospaced", Font.BOLD, (10*tetrominoSize)/10));
+            strikeLabel.setFont(strikeFont);
             strikeLabel.setForeground(Color.WHITE);
             strikeLabelSize = strikeLabel.getPreferredSize();
             strikeLabel.setBounds((int) (holdAreaX1+(holdAreaWidth-strikeLabelSize.getWidth())/2), (int) (holdAreaY1 + holdAreaHeight + (5* tetrominoSize)), strikeLabelSize.width+ 50, strikeLabelSize.height);
 
-            strikeCountLabel.setFont(new Font("Monospaced", Font.BOLD, (10*tetrominoSize)/10));
+            strikeCountLabel.setFont(strikeFont);
             strikeCountLabel.setForeground(Color.WHITE);
             strikeCountLabelSize = strikeCountLabel.getPreferredSize();
             strikeCountLabel.setBounds((int) (holdAreaX1+(holdAreaWidth-strikeCountLabelSize.getWidth())/2), (int) (holdAreaY1 + holdAreaHeight + (6.5* tetrominoSize)), strikeCountLabelSize.width+ 50, strikeCountLabelSize.height);
 
-            gameOverLabel.setFont(new Font("Monospaced", Font.BOLD, (17*tetrominoSize)/10));
-            gameOverLabel.setForeground(Color.WHITE);
-            gameOverLabelSize = gameOverLabel.getPreferredSize();
-            gameOverLabel.setBounds(screenWidth/2-(gameOverLabelSize.width/2),screenHeight/2-(gameOverLabelSize.height/2) - (tetrominoSize),gameOverLabelSize.width+50,gameOverLabelSize.height);
+            if (gameOverLabel != null) {
+                gameOverLabel.setFont(gameOverFont);
+                gameOverLabel.setForeground(Color.WHITE);
+                gameOverLabelSize = gameOverLabel.getPreferredSize();
+                gameOverLabel.setBounds(screenWidth/2-(gameOverLabelSize.width/2),screenHeight/2-(gameOverLabelSize.height/2) - (tetrominoSize),gameOverLabelSize.width+50,gameOverLabelSize.height);
+
+                pressEnterLabel.setFont(titleFont);
+                pressEnterLabel.setForeground(Color.WHITE);
+                pressEnterLabelSize = pressEnterLabel.getPreferredSize();
+                pressEnterLabel.setBounds(screenWidth/2-(pressEnterLabelSize.width/2),screenHeight/2-(pressEnterLabelSize.height/2) + (tetrominoSize),pressEnterLabelSize.width+50,pressEnterLabelSize.height);
+            }
+
+            if (gamePausedLabel != null) {
+                gamePausedLabel.setFont(gamePausedFont);
+                gamePausedLabel.setForeground(Color.WHITE);
+                gamePausedLabelSize = gamePausedLabel.getPreferredSize();
+                gamePausedLabel.setBounds(screenWidth/2-(gamePausedLabelSize.width/2),screenHeight/2-(gamePausedLabelSize.height/2),gamePausedLabelSize.width+50,gamePausedLabelSize.height);
+            }
+        }
+
+        //Recalculates tetrominoSize, The Areas, The Fonts And The Sprites Due To The Screen Size
+        public void updateLayout(){
+
+            //Block size is scaled from the default 900x594 window with 20 px blocks. Window has 35 columns and 9.7 rows around the
+            //play area (45 and 29.7 blocks with the standard board)
+            tetrominoSize = Math.max(4, Math.min(screenWidth/(gridWidth+35), (screenHeight*10)/((gridHeight-hiddenRows)*10+97)));
+
+            playAreaWidth = ((gridWidth+2)*tetrominoSize);
+            playAreaHeight = ((gridHeight-hiddenRows+2)*tetrominoSize);
+            playAreaX1 = (screenWidth-playAreaWidth)/2;
+            playAreaY1 = (screenHeight-playAreaHeight)/2;
+
+            nextAreaWidth = 6*tetrominoSize;
+            nextAreaHeight = 6*tetrominoSize;
+            nextAreaX1 = playAreaX1 + playAreaWidth + (tetrominoSize);
+            nextAreaY1 = (playAreaY1 + (playAreaHeight-nextAreaHeight)/6);
+
+            queueAreaWidth = 3*tetrominoSize;
+            queueAreaHeight = (previewCount-1)*QUEUE_SLOT_HEIGHT*tetrominoSize/2;
+            queueAreaX1 = nextAreaX1 + nextAreaWidth + tetrominoSize/2;
+            queueAreaY1 = nextAreaY1;
+
+            holdAreaWidth = 6*tetrominoSize;
+            holdAreaHeight = 6*tetrominoSize;
+            holdAreaX1 = playAreaX1 - holdAreaWidth - (tetrominoSize);
+            holdAreaY1 = (playAreaY1 + (playAreaHeight-holdAreaHeight)/6);
+
+            //Fonts and sprites only depend on tetrominoSize (And the sprites on the screen)
+            if (spriteSize != tetrominoSize || spriteConfiguration != getGraphicsConfiguration()) {
+                titleFont = new Font("Monospaced", Font.BOLD, (12*tetrominoSize)/10);
+                countFont = new Font("Monospaced", Font.BOLD, (11*tetrominoSize)/10);
+                strikeFont = new Font("Monospaced", Font.BOLD, (10*tetrominoSize)/10);
+                gameOverFont = new Font("Monospaced", Font.BOLD, (17*tetrominoSize)/10);
+                gamePausedFont = new Font("Monospaced", Font.BOLD, (14*tetrominoSize)/10);
+                createSprites();
+            }
+            layoutLabels();
+        }
+
+        //Renders The Block, Hologram And Play Area Sprites For The Current tetrominoSize
+        public void createSprites(){
+            int inset = 2*tetrominoSize/20;
+
+            for (int i = 0; i <= SHAPES.length; i++) {
+                Color color = shapeOf(i).color;
+
+                //Block sprite is one pixel bigger because the outline is drawn with drawRect
+                blockSprites[i] = createSprite(tetrominoSize + 1, tetrominoSize + 1);
+                Graphics2D g = blockSprites[i].createGraphics();
+                g.setColor(color);
+                g.fillRect(0, 0, tetrominoSize, tetrominoSize);
+                g.setColor(Color.BLACK);
+                g.drawRect(0, 0, tetrominoSize, tetrominoSize);
+                g.dispose();
+
+                int smallSize = tetrominoSize/2;
+                smallBlockSprites[i] = createSprite(smallSize + 1, smallSize + 1);
+                g = smallBlockSprites[i].createGraphics();
+                g.setColor(color);
+                g.fillRect(0, 0, smallSize, smallSize);
+                g.setColor(Color.BLACK);
+                g.drawRect(0, 0, smallSize, smallSize);
+                g.dispose();
+
+                ghostSprites[i] = createSprite(tetrominoSize, tetrominoSize);
+                g = ghostSprites[i].createGraphics();
+                g.setColor(color.darker());
+                g.fillRect(0, 0, tetrominoSize, tetrominoSize);
+                g.setColor(Color.BLACK);
+                g.fillRect(inset, inset, tetrominoSize - 2*inset, tetrominoSize - 2*inset);
+                g.dispose();
+            }
+
+            //Play area with its borders and the grid
+            playAreaSprite = createSprite(playAreaWidth + 1, playAreaHeight + 1);
+            Graphics2D g = playAreaSprite.createGraphics();
+            g.setColor(Color.LIGHT_GRAY);
+            g.fillRect(0, 0, playAreaWidth + 1, playAreaHeight + 1);
+            g.setColor(Color.BLACK);
+            g.fillRect(tetrominoSize, tetrominoSize, playAreaWidth-2*tetrominoSize, playAreaHeight-2*tetrominoSize);
+            g.setColor(new Color(31, 31, 31));
+            for (int i = 0; i <= playAreaWidth; i += tetrominoSize)
+                g.drawLine(i, tetrominoSize, i, playAreaHeight-tetrominoSize);
+            for (int i = 0; i <= playAreaHeight; i += tetrominoSize)
+                g.drawLine(tetrominoSize, i, playAreaWidth-tetrominoSize, i);
+            g.dispose();
+
+            spriteSize = tetrominoSize;
+            spriteConfiguration = getGraphicsConfiguration();
+        }
 
-            pressEnterLabel.setFont(new Font("Monospaced", Font.BOLD, (12*tetrominoSize)/10));
-            pressEnterLabel.setForeground(Color.WHITE);
-            pressEnterLabelSize = pressEnterLabel.getPreferredSize();
-            pressEnterLabel.setBounds(screenWidth/2-(pressEnterLabelSize.width/2),screenHeight/2-(pressEnterLabelSize.height/2) + (tetrominoSize),pressEnterLabelSize.width+50,pressEnterLabelSize.height);
+        //Creates An Opaque Image That Is Compatible With The Screen If Possible (Compatible images could be blitted by the graphics card)
+        public BufferedImage createSprite(int width, int height){
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            if (configuration != null)
+                return configuration.createCompatibleImage(width, height, Transparency.OPAQUE);
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
 
-            gamePausedLabel.setFont(new Font("Monospaced", Font.BOLD, (14*tetrominoSize)/10));
-            gamePausedLabel.setForeground(Color.WHITE);
-            gamePausedLabelSize = gamePausedLabel.getPreferredSize();
-            gamePausedLabel.setBounds(screenWidth/2-(gamePausedLabelSize.width/2),screenHeight/2-(gamePausedLabelSize.height/2),gamePausedLabelSize.width+50,gamePausedLabelSize.height);
+        //Paints One Block Of The Given Shape Into The Given Pixel Coordinate
+        public void paintBlock(Graphics g, PieceShape shape, int x, int y){
+            g.drawImage(blockSprites[shape.id], x, y, null);
         }
 
         //Paints The Game Areas And Grids.
         protected void paintComponent(Graphics g) {
+            GameEvents.Paint paintEvent = new GameEvents.Paint();
+            paintEvent.begin();
             super.paintComponent(g);
 
             //Updates the positions of all components due to screen size change
@@ -318,52 +738,25 @@ public class Tetris {
 
                 screenWidth = getWidth();
                 screenHeight = getHeight();
-                playAreaX1 = (screenWidth-(12*tetrominoSize))/2;
-                playAreaY1 = (screenHeight-(22*tetrominoSize))/2;
-                nextAreaX1 = playAreaX1 + playAreaWidth + (tetrominoSize);
-                nextAreaY1 = (playAreaY1 + (playAreaHeight-nextAreaHeight)/6);
-                holdAreaX1 = playAreaX1 - holdAreaWidth - (tetrominoSize);
-                holdAreaY1 = (playAreaY1 + (playAreaHeight-holdAreaHeight)/6);
-
-                //Repositioning labels
-                nextLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-nextLabelSize.getWidth())/2), (int) (nextAreaY1-(1.5* tetrominoSize)), nextLabelSize.width + 50, nextLabelSize.height);
-                holdLabel.setBounds((int) (holdAreaX1+(holdAreaWidth-holdLabelSize.getWidth())/2), (int) (holdAreaY1-(1.5* tetrominoSize)), holdLabelSize.width + 50, holdLabelSize.height);
-                scoreLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-scoreLabelSize.getWidth())/2), (int) (nextAreaY1+nextAreaHeight + (tetrominoSize)), scoreLabelSize.width + 50, scoreLabelSize.height);
-                scoreCountLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-scoreCountLabelSize.getWidth())/2), (int) (nextAreaY1+nextAreaHeight + (2.5*tetrominoSize)), scoreCountLabelSize.width + 50, scoreCountLabelSize.height);
-                levelLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-levelLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (5* tetrominoSize)), levelLabelSize.width+ 50, levelLabelSize.height);
-                levelCountLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-levelCountLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (6.5* tetrominoSize)), levelCountLabelSize.width+ 50, levelCountLabelSize.height);
-                linesLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-linesLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (9* tetrominoSize)), linesLabelSize.width+ 50, linesLabelSize.height);
-                linesCountLabel.setBounds((int) (nextAreaX1+(nextAreaWidth-linesCountLabelSize.getWidth())/2), (int) (nextAreaY1 + nextAreaHeight + (10.5* tetrominoSize)), linesCountLabelSize.width+ 50, linesCountLabelSize.height);
-                strikeLabel.setBounds((int) (holdAreaX1+(holdAreaWidth-strikeLabelSize.getWidth())/2), (int) (holdAreaY1 + holdAreaHeight + (5* tetrominoSize)), strikeLabelSize.width+ 50, strikeLabelSize.height);
-                strikeCountLabel.setBounds((int) (holdAreaX1+(holdAreaWidth-strikeCountLabelSize.getWidth())/2), (int) (holdAreaY1 + holdAreaHeight + (6.5* tetrominoSize)), strikeCountLabelSize.width+ 50, strikeCountLabelSize.height);
-                gameOverLabel.setBounds(screenWidth/2-(gameOverLabelSize.width/2),screenHeight/2-(gameOverLabelSize.height/2) - (tetrominoSize),gameOverLabelSize.width+50,gameOverLabelSize.height);
-                pressEnterLabel.setBounds(screenWidth/2-(pressEnterLabelSize.width/2),screenHeight/2-(pressEnterLabelSize.height/2) + (tetrominoSize),pressEnterLabelSize.width+50,pressEnterLabelSize.height);
-                gamePausedLabel.setBounds(screenWidth/2-(gamePausedLabelSize.width/2),screenHeight/2-(gamePausedLabelSize.height/2),gamePausedLabelSize.width+50,gamePausedLabelSize.height);
+                updateLayout();
             }
 
             //Drawing The Areas
+            g.drawImage(playAreaSprite, playAreaX1, playAreaY1, null);   //Drawing the play area and its grid
             g.setColor(Color.LIGHT_GRAY);
-            g.fillRect(playAreaX1,playAreaY1,playAreaWidth,playAreaHeight);   //Drawing the outline of play area
             g.fillRect(nextAreaX1,nextAreaY1,nextAreaWidth,nextAreaHeight);   //Drawing the outline of next area
-            if(!gameMode.equals("classic"))
+            if(previewCount > 1)
+                g.fillRect(queueAreaX1,queueAreaY1,queueAreaWidth,queueAreaHeight);   //Drawing the outline of queue area
+            if(gameMode.hold)
                 g.fillRect(holdAreaX1,holdAreaY1,holdAreaWidth,holdAreaHeight);   //Drawing the outline of hold area
 
             g.setColor(Color.BLACK);
-            g.fillRect(playAreaX1+tetrominoSize,playAreaY1+tetrominoSize,playAreaWidth-2*tetrominoSize,playAreaHeight-2*tetrominoSize);
             g.fillRect(nextAreaX1+(tetrominoSize/4), nextAreaY1+(tetrominoSize/4), nextAreaWidth-(tetrominoSize/2),nextAreaHeight-(tetrominoSize/2));
-            if(!gameMode.equals("classic"))
+            if(previewCount > 1)
+                g.fillRect(queueAreaX1+(tetrominoSize/4), queueAreaY1+(tetrominoSize/4), queueAreaWidth-(tetrominoSize/2),queueAreaHeight-(tetrominoSize/2));
+            if(gameMode.hold)
                 g.fillRect(holdAreaX1+(tetrominoSize/4), holdAreaY1+(tetrominoSize/4), holdAreaWidth-(tetrominoSize/2),holdAreaHeight-(tetrominoSize/2));
 
-            //Drawing the grid
-            for(int i=playAreaX1; i<=playAreaX1+playAreaWidth ; i+=tetrominoSize) {
-                g.setColor(new Color(31, 31, 31));
-                g.drawLine(i, playAreaY1+tetrominoSize , i, playAreaY1+playAreaHeight-tetrominoSize);
-            }
-            for(int i=playAreaY1; i<=playAreaY1+playAreaHeight ; i+=tetrominoSize) {
-                g.setColor(new Color(31, 31, 31));
-                g.drawLine(playAreaX1+tetrominoSize, i , playAreaX1+playAreaWidth-tetrominoSize, i);
-            }
-
             paintTetrominoes(g);
 
             //Painting the top of the play area to prevent Tetrominoes to appear from above.
@@ -373,230 +766,75 @@ public class Tetris {
             g.setColor(Color.BLACK);
             g.drawRect(playAreaX1+tetrominoSize,playAreaY1+tetrominoSize,playAreaWidth-2*tetrominoSize,playAreaHeight-2*tetrominoSize);
             g.drawRect(playAreaX1,playAreaY1,playAreaWidth,playAreaHeight);
-            g.fillRect(playAreaX1,playAreaY1-(4*tetrominoSize),playAreaWidth,(4*tetrominoSize));
+            g.fillRect(playAreaX1,playAreaY1-(hiddenRows*tetrominoSize),playAreaWidth,(hiddenRows*tetrominoSize));
+
+            if (!firstFramePainted) {
+                firstFramePainted = true;
+                firstFrame();
+            }
+            performance.paint(g, Tetris.this);
+            paintEvent.commit();
         }
 
         //Paints All The Tetrominoes(Contains Placed, Falling, Next, Hold, And Hologram Tetrominoes)
         public void paintTetrominoes(Graphics g){
 
-            if(gameMode != "classic") {
-                //Painting the hologram Tetromino
-                int minDistance = Integer.MAX_VALUE;   //Min distance to bottom(or another Tetromino)
-                int distance;   //Helps to find minDistance
-                int minYCoordinate;    //Min y-coordinate of the currentTetromino
-
-                //Stores the blocks of the current Tetromino
-                int[][] blocksOfCurrentTetromino = {currentTetromino.block0, currentTetromino.block1, currentTetromino.block2, currentTetromino.block3};
-
-                //Traverses across the blocks of the current Tetromino. Finds the minDistance to bottom.
-                for (int[] blocks : blocksOfCurrentTetromino) {
-                    distance = 0;
-                    minYCoordinate = blocks[1];
-
-                    while (minYCoordinate < gameGrid[0].length) {
-                        if (gameGrid[blocks[0]][minYCoordinate] == null || gameGrid[blocks[0]][minYCoordinate].equals(currentTetromino)) {
-                            distance++;
-                            minYCoordinate++;
-                        } else break;
-                    }
-                    if (minDistance > distance)
-                        minDistance = distance;
-                }
-                //Draws the hologram
-                g.setColor(currentTetromino.color.darker());
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block0[0] * tetrominoSize), playAreaY1 + tetrominoSize + ((currentTetromino.block0[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize), tetrominoSize, tetrominoSize);
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block1[0] * tetrominoSize), playAreaY1 + tetrominoSize + ((currentTetromino.block1[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize), tetrominoSize, tetrominoSize);
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block2[0] * tetrominoSize), playAreaY1 + tetrominoSize + ((currentTetromino.block2[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize), tetrominoSize, tetrominoSize);
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block3[0] * tetrominoSize), playAreaY1 + tetrominoSize + ((currentTetromino.block3[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize), tetrominoSize, tetrominoSize);
-                g.setColor(Color.BLACK);
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block0[0] * tetrominoSize) + (2 * tetrominoSize / 20), playAreaY1 + tetrominoSize + ((currentTetromino.block0[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize) + (2 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20));
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block1[0] * tetrominoSize) + (2 * tetrominoSize / 20), playAreaY1 + tetrominoSize + ((currentTetromino.block1[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize) + (2 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20));
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block2[0] * tetrominoSize) + (2 * tetrominoSize / 20), playAreaY1 + tetrominoSize + ((currentTetromino.block2[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize) + (2 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20));
-                g.fillRect(playAreaX1 + tetrominoSize + (currentTetromino.block3[0] * tetrominoSize) + (2 * tetrominoSize / 20), playAreaY1 + tetrominoSize + ((currentTetromino.block3[1] - 4) * tetrominoSize) + ((minDistance - 1) * tetrominoSize) + (2 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20), tetrominoSize - (4 * tetrominoSize / 20));
+            //Game loop must not move the Tetrominoes while they are painted
+            synchronized (Tetris.this) {
+                int[][] cells = currentTetromino.shape.cells[currentTetromino.rotation];
 
-            }
+                if (gameMode.ghost && currentTetromino.spawned) {
+                    //Painting the hologram Tetromino. Finds the lowest row that the current Tetromino could fall.
+                    int hologramY = currentTetromino.y;
+                    while (currentTetromino.fits(currentTetromino.x, hologramY + 1, currentTetromino.rotation))
+                        hologramY++;
+
+                    BufferedImage ghostSprite = ghostSprites[currentTetromino.shape.id];
+                    for (int[] cell : cells)
+                        g.drawImage(ghostSprite, playAreaX1 + tetrominoSize + ((currentTetromino.x + cell[0]) * tetrominoSize), playAreaY1 + tetrominoSize + ((hologramY + cell[1] - hiddenRows) * tetrominoSize), null);
+                }
 
-            //Painting falling and placed Tetrominoes
-            for(int i = 0; i < gameGrid.length ; i++){  //i<10
-                for (int j = gameGrid[0].length-1; j >= 0 ; j--){  //j<24
-                    if(gameGrid[i][j] != null) {
-                        g.setColor(gameGrid[i][j].color);
-                        g.fillRect(playAreaX1 + tetrominoSize + (i*tetrominoSize) , playAreaY1 + tetrominoSize + ((j-4)*tetrominoSize) , tetrominoSize, tetrominoSize);
-                        g.setColor(Color.BLACK);
-                        g.drawRect(playAreaX1 + tetrominoSize + (i*tetrominoSize) , playAreaY1 + tetrominoSize + ((j-4)*tetrominoSize) , tetrominoSize, tetrominoSize);
+                //Painting placed Tetrominoes
+                for (int j = 0; j < gridHeight; j++) {
+                    if (rows[j] == 0)
+                        continue;   //Empty row
+                    for (int i = 0; i < gridWidth; i++) {
+                        int cell = Tetris.this.cells[j * gridWidth + i];
+                        if (cell != 0)
+                            g.drawImage(blockSprites[cell - 1], playAreaX1 + tetrominoSize + (i * tetrominoSize), playAreaY1 + tetrominoSize + ((j - hiddenRows) * tetrominoSize), null);
                     }
                 }
-            }
 
-            //Painting the next area Tetromino
-            if (nextTetromino == 'I') {
-                int startX = nextAreaX1 + (nextAreaWidth-4*tetrominoSize)/2;
-                int startY = nextAreaY1 + (nextAreaHeight-tetrominoSize)/2;
-                paintI_Piece(g,startX,startY);
-            }
-            else if (nextTetromino == 'J') {
-                int startX = nextAreaX1 + (nextAreaWidth-3*tetrominoSize)/2;
-                int startY = nextAreaY1 + (nextAreaHeight-2*tetrominoSize)/2;
-                paintJ_Piece(g,startX,startY);
-            }
-            else if (nextTetromino == 'L') {
-                int startX = nextAreaX1 + (nextAreaWidth-3*tetrominoSize)/2;
-                int startY = nextAreaY1 + (nextAreaHeight-2*tetrominoSize)/2;
-                paintL_Piece(g,startX,startY);
-            }
-            else if (nextTetromino == 'O') {
-                int startX = nextAreaX1 + (nextAreaWidth-2*tetrominoSize)/2;
-                int startY = nextAreaY1 + (nextAreaHeight-2*tetrominoSize)/2;
-                paintO_Piece(g,startX,startY);
-            }
-            else if (nextTetromino == 'S') {
-                int startX = nextAreaX1 + (nextAreaWidth-3*tetrominoSize)/2;
-                int startY = nextAreaY1 + (nextAreaHeight-2*tetrominoSize)/2;
-                paintS_Piece(g,startX,startY);
-            }
-            else if (nextTetromino == 'T') {
-                int startX = nextAreaX1 + (nextAreaWidth-3*tetrominoSize)/2;
-                int startY = nextAreaY1 + (nextAreaHeight-2*tetrominoSize)/2;
-                paintT_Piece(g,startX,startY);
-            }
-            else if (nextTetromino == 'Z') {
-                int startX = nextAreaX1 + (nextAreaWidth-3*tetrominoSize)/2;
-                int startY = nextAreaY1 + (nextAreaHeight-2*tetrominoSize)/2;
-                paintZ_Piece(g,startX,startY);
-            }
+                //Painting falling Tetromino
+                if (currentTetromino.spawned) {
+                    for (int[] cell : cells)
+                        paintBlock(g, currentTetromino.shape, playAreaX1 + tetrominoSize + ((currentTetromino.x + cell[0]) * tetrominoSize), playAreaY1 + tetrominoSize + ((currentTetromino.y + cell[1] - hiddenRows) * tetrominoSize));
+                }
 
-            //Painting the hold area Tetromino
-            if (holdTetromino == 'I') {
-                int startX = holdAreaX1 + (holdAreaWidth-4*tetrominoSize)/2;
-                int startY = holdAreaY1 + (holdAreaHeight-tetrominoSize)/2;
-                paintI_Piece(g,startX,startY);
-            }
-            else if (holdTetromino == 'J') {
-                int startX = holdAreaX1 + (holdAreaWidth-3*tetrominoSize)/2;
-                int startY = holdAreaY1 + (holdAreaHeight-2*tetrominoSize)/2;
-                paintJ_Piece(g,startX,startY);
-            }
-            else if (holdTetromino == 'L') {
-                int startX = holdAreaX1 + (holdAreaWidth-3*tetrominoSize)/2;
-                int startY = holdAreaY1 + (holdAreaHeight-2*tetrominoSize)/2;
-                paintL_Piece(g,startX,startY);
-            }
-            else if (holdTetromino == 'O') {
-                int startX = holdAreaX1 + (holdAreaWidth-2*tetrominoSize)/2;
-                int startY = holdAreaY1 + (holdAreaHeight-2*tetrominoSize)/2;
-                paintO_Piece(g,startX,startY);
-            }
-            else if (holdTetromino == 'S') {
-                int startX = holdAreaX1 + (holdAreaWidth-3*tetrominoSize)/2;
-                int startY = holdAreaY1 + (holdAreaHeight-2*tetrominoSize)/2;
-                paintS_Piece(g,startX,startY);
-            }
-            else if (holdTetromino == 'T') {
-                int startX = holdAreaX1 + (holdAreaWidth-3*tetrominoSize)/2;
-                int startY = holdAreaY1 + (holdAreaHeight-2*tetrominoSize)/2;
-                paintT_Piece(g,startX,startY);
-            }
-            else if (holdTetromino == 'Z') {
-                int startX = holdAreaX1 + (holdAreaWidth-3*tetrominoSize)/2;
-                int startY = holdAreaY1 + (holdAreaHeight-2*tetrominoSize)/2;
-                paintZ_Piece(g,startX,startY);
+                //Painting the next area and hold area Tetrominoes. Rest of the preview is painted with small blocks under each other
+                PieceShape next = preview(0);
+                if (next != null)
+                    paintPiece(g, next, nextAreaX1, nextAreaY1, nextAreaWidth, nextAreaHeight);
+                for (int i = 1; i < previewCount && preview(i) != null; i++)
+                    paintPiece(g, preview(i), smallBlockSprites, tetrominoSize/2, queueAreaX1, queueAreaY1 + (i-1)*QUEUE_SLOT_HEIGHT*tetrominoSize/2, queueAreaWidth, QUEUE_SLOT_HEIGHT*tetrominoSize/2);
+                if (holdTetromino != null)
+                    paintPiece(g, holdTetromino, holdAreaX1, holdAreaY1, holdAreaWidth, holdAreaHeight);
             }
         }
 
         /* Helps To Paint Tetrominoes In The Next And Hold Area */
-        //Gets x And y Coordinates As Parameters And Paints The Corresponded Piece
-        public void paintI_Piece(Graphics g, int startX, int startY){
-            //Painting the blocks
-            g.setColor(I_PieceColor);
-            g.fillRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(3*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-
-            //Drawing the borders of the blocks
-            g.setColor(Color.BLACK);
-            g.drawRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(3*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-        }
-        public void paintJ_Piece (Graphics g, int startX, int startY){
-            g.setColor(J_PieceColor);
-            g.fillRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(2*tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-
-            g.setColor(Color.BLACK);
-            g.drawRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(2*tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-        }
-        public void paintL_Piece(Graphics g, int startX, int startY){
-            g.setColor(L_PieceColor);
-            g.fillRect(startX,startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.fillRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-
-            g.setColor(Color.BLACK);
-            g.drawRect(startX,startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.drawRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-        }
-        public void paintO_Piece(Graphics g, int startX, int startY){
-            g.setColor(O_PieceColor);
-            g.fillRect(startX,startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX,startY,tetrominoSize,tetrominoSize);
-
-            g.setColor(Color.BLACK);
-            g.drawRect(startX,startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX,startY,tetrominoSize,tetrominoSize);
-        }
-        public void paintS_Piece(Graphics g, int startX, int startY){
-            g.setColor(S_PieceColor);
-            g.fillRect(startX,startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-
-            g.setColor(Color.BLACK);
-            g.drawRect(startX,startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-        }
-        public void paintT_Piece(Graphics g, int startX, int startY){
-            g.setColor(T_PieceColor);
-            g.fillRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
+        //Paints The Given Shape In Its First Rotation Into The Middle Of The Given Area
+        public void paintPiece(Graphics g, PieceShape shape, int areaX1, int areaY1, int areaWidth, int areaHeight){
+            paintPiece(g, shape, blockSprites, tetrominoSize, areaX1, areaY1, areaWidth, areaHeight);
+        }
 
-            g.setColor(Color.BLACK);
-            g.drawRect(startX,startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(2*tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-        }
-        public void paintZ_Piece(Graphics g, int startX, int startY){
-            g.setColor(Z_PieceColor);
-            g.fillRect(startX+(2*tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.fillRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.fillRect(startX,startY,tetrominoSize,tetrominoSize);
+        //Paints The Given Shape With The Given Block Sprites And Block Size
+        public void paintPiece(Graphics g, PieceShape shape, BufferedImage[] sprites, int blockSize, int areaX1, int areaY1, int areaWidth, int areaHeight){
+            int startX = areaX1 + (areaWidth - shape.width*blockSize)/2;
+            int startY = areaY1 + (areaHeight - shape.height*blockSize)/2;
 
-            g.setColor(Color.BLACK);
-            g.drawRect(startX+(2*tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY+(tetrominoSize),tetrominoSize,tetrominoSize);
-            g.drawRect(startX+(tetrominoSize),startY,tetrominoSize,tetrominoSize);
-            g.drawRect(startX,startY,tetrominoSize,tetrominoSize);
+            for (int[] cell : shape.cells[0])
+                g.drawImage(sprites[shape.id], startX + (cell[0] - shape.left)*blockSize, startY + (cell[1] - shape.top)*blockSize, null);
         }
 
         /* Checks The Keyboard Input */
@@ -605,111 +843,89 @@ public class Tetris {
 
             int key = e.getKeyCode();
 
-            if(!gameOver && !gamePaused) {
+            //Key repeat of the system presses a held key again. Finesse counts a held move key as one press (DAS)
+            boolean repeated = key < heldKeys.length && heldKeys[key];
+            if (key < heldKeys.length)
+                heldKeys[key] = true;
 
-                //Move left input (Left Arrow Key By Default)
-                if (key == KeyEvent.VK_LEFT) currentTetromino.moveLeft();
+            synchronized (Tetris.this) {
+                if(!gameOver && !gamePaused) {
 
-                //Move right input (Right Arrow Key By Default)
-                if (key == KeyEvent.VK_RIGHT) currentTetromino.moveRight();
+                    //Move left input (Left Arrow Key By Default)
+                    if (key == KeyEvent.VK_LEFT) input(Replay.LEFT, repeated);
 
-                //Move fast input (Down Arrow Key By Default)
-                if (key == KeyEvent.VK_DOWN) {
-                    //Shortens the wait time of the current Tetromino if there is nothing under
-                    if(!checkUnder(currentTetromino)) {
-                        currentTetromino.interrupt();
-                        gameSpeed = 0.03;
-                    }
-                }
+                    //Move right input (Right Arrow Key By Default)
+                    if (key == KeyEvent.VK_RIGHT) input(Replay.RIGHT, repeated);
 
-                //Rotate left input (Z Letter Key By Default)
-                if (key == KeyEvent.VK_Z) currentTetromino.rotateLeft();
+                    //Move fast input (Down Arrow Key By Default)
+                    if (key == KeyEvent.VK_DOWN) input(Replay.SOFT_DROP);
 
-                //Rotate right input (X Letter Key or Up Arrow Key By Default)
-                if (key == KeyEvent.VK_UP || key == KeyEvent.VK_X) currentTetromino.rotateRight();
+                    //Rotate left input (Z Letter Key By Default)
+                    if (key == KeyEvent.VK_Z) input(Replay.ROTATE_LEFT, repeated);
+
+                    //Rotate right input (X Letter Key or Up Arrow Key By Default)
+                    if (key == KeyEvent.VK_UP || key == KeyEvent.VK_X) input(Replay.ROTATE_RIGHT, repeated);
+                }
             }
         }
         @Override
         public void keyReleased(KeyEvent e) {
             int key = e.getKeyCode();
-
-            //Pause the game input (ESCAPE button by default)
-            if (!gameOver && key == KeyEvent.VK_ESCAPE) {
-                if (!gamePaused) {
-                    gamePanel.add(gamePanel.gamePausedLabel);
-                    gamePaused = true;
-                } else {
-                    gamePanel.remove(gamePanel.gamePausedLabel);
-                    gamePaused = false;
+            if (key < heldKeys.length)
+                heldKeys[key] = false;
+
+            synchronized (Tetris.this) {
+                //Performance overlay input (F3 Key By Default)
+                if (key == KeyEvent.VK_F3) {
+                    performance.visible = !performance.visible;
+                    inputLatency = performance.visible ? performance::inputApplied : null;   //Overlay counts the latency when the inputs are applied
                 }
-                gameSpeed = Math.pow((0.8 - ((level) * 0.007)), level);
-            }
 
-            if (!gameOver && !gamePaused) {
-
-                //Returns the gameSpeed to default value
-                if (key == KeyEvent.VK_DOWN) {
-                    gameSpeed = Math.pow((0.8 - ((level) * 0.007)), level);
+                //Pause the game input (ESCAPE button by default)
+                if (!gameOver && key == KeyEvent.VK_ESCAPE) {
+                    input(Replay.SOFT_DROP_RELEASE);   //Applied even though the game is paused
+                    if (!gamePaused) {
+                        gamePanel.showPaused();
+                        gamePaused = true;
+                        saveGame();
+                    } else {
+                        gamePanel.hidePaused();
+                        gamePaused = false;
+                    }
                 }
 
-                if (!gameMode.equals("classic")) {
+                if (!gameOver && !gamePaused) {
+
+                    //Returns the gravity to default value
+                    if (key == KeyEvent.VK_DOWN) input(Replay.SOFT_DROP_RELEASE);
 
                     //Hold input (C Letter Key By Default)
-                    if (key == KeyEvent.VK_C && !holdUsed) {
-
-                        //If it is the first hold input
-                        if (holdTetromino == 'N') {
-                            holdTetromino = currentTetromino.type;
-                            if (deleteTetromino(currentTetromino))
-                                generateRandomTetromino();
-                        }
-                        //If there is already a hold Tetromino
-                        else {
-                            char temp = holdTetromino;
-                            holdTetromino = currentTetromino.type;
-
-                            if (deleteTetromino(currentTetromino))
-                                currentTetromino = generateTetromino(temp);
-                        }
-                        holdUsed = true;  //Sets holdUsed to true to prevent using hold operation again
-                    }
+                    if (key == KeyEvent.VK_C) input(Replay.HOLD);
 
                     //Hard Drop Input (SPACE Key By Default)
-                    if (key == KeyEvent.VK_SPACE) {
-                        currentTetromino.placed = true;
-
-                        //Moves until it reaches to bottom
-                        while (!checkUnder(currentTetromino)) {
-                            currentTetromino.clearTetromino();
-                            currentTetromino.block0[1]++;
-                            currentTetromino.block1[1]++;
-                            currentTetromino.block2[1]++;
-                            currentTetromino.block3[1]++;
-                            currentTetromino.addTetromino();
-                        }
-                        currentTetromino.interrupt();
-                        currentTetromino.addTetromino();
+                    if (key == KeyEvent.VK_SPACE) input(Replay.HARD_DROP);
+
+                    //Bot input (B Letter Key By Default). Beam search bot plays until it is pressed again
+                    if (key == KeyEvent.VK_B && standardBoard()) {
+                        autoPlayer = autoPlayer == null ? new BeamSearchBot() : null;
+                        replay = null;   //Moves of the bot are not inputs
+                        log(autoPlayer == null ? "Bot stopped" : "Bot started");
                     }
                 }
-            }
 
-            if (gameOver){
-
-                if (key == KeyEvent.VK_ENTER) {
-                    score = 0;
-                    level = 0;
-                    lines = 0;
-                    gameSpeed = Math.pow( (0.8-((level)*0.007)) , level );
-                    tetrominoes = new ArrayDeque<>();
-                    generateRandomTetromino();
-                    currentTetromino.addTetromino();
-                    holdTetromino = 'N';
-                    gameGrid = new Tetromino[10][24];
-                    gamePanel.remove(gameOverLabel);
-                    gamePanel.remove(pressEnterLabel);
-                    updateLabels();
-                    gameOver = false;
-                    currentTetromino.addTetromino();
+                if (gameOver){
+
+                    //Versus game waits for the next match. It is reset when the match starts
+                    if (key == KeyEvent.VK_ENTER && versus != null) {
+                        hideGameOver();
+                        versus.join(gameMode);
+                    }
+                    else if (key == KeyEvent.VK_ENTER) {
+                        resetGame();
+                        hideGameOver();
+                        updateLabels();
+                        gameOver = false;
+                    }
                 }
             }
         }
@@ -719,1235 +935,1205 @@ public class Tetris {
     }
 
     /*Tetrominoes*/
-    //Parent Tetromino Class
-    abstract class Tetromino extends Thread{
-
-        //Block components of the tetromino. Each block contains its coordinate. First index is x coordinate, Second index is y coordinate.
-        int[] block0 = new int[2];
-        int[] block1 = new int[2];
-        int[] block2 = new int[2];
-        int[] block3 = new int[2];
-
-        Color color;
-        char type;    //Stores the type of the tetromino. For example: 'T' , 'Z'
-        int rotation;   //Stores the current rotation of the tetromino
-        boolean rotated = false;   //Checks if it is rotated.
-        boolean placed = false;   //Checks if it is placed
-        boolean alive = true;   //Checks if it is deleted
-
-        //Moves The Tetromino One Block Down In Every Time Period
-        public void run(){
-
-            //Moves until it reaches the bottom(or top of another Tetromino).
-            while (!placed && alive) {
-                try {
-                    //Waits gameSpeed amount of time.
-                    if (!checkUnder(this)) {
-                        Thread.sleep((long) (gameSpeed * 1000));
-
-                        if (!checkUnder(this) && !gamePaused) {
-                            clearTetromino();
-                            block0[1]++;
-                            block1[1]++;
-                            block2[1]++;
-                            block3[1]++;
-                            addTetromino();
-                        }
-                    }
-                    //Gives time to move when reached bottom
-                    else {
-                        Thread.sleep((long) (0.5 * 1000));
-
-                        if (!checkUnder(this)  && !gamePaused ) {
-                            clearTetromino();
-                            block0[1]++;
-                            block1[1]++;
-                            block2[1]++;
-                            block3[1]++;
-                            addTetromino();
-                        }
-                        else{
-                            while(gamePaused){/* Just waiting lol */}
-                            placed = true;
-                        }
-                    }
-
-                } catch (InterruptedException e) {
-                    //throw new RuntimeException(e);
+    //Shape Of A Tetromino Type. There Is Only One Immutable Instance Of Each Shape And It Is Shared By The Whole Game
+    //(Falling Tetromino, Placed Blocks, Next And Hold Areas)
+    static final class PieceShape {
+
+        final int id;   //Index of the shape in SHAPES. (GARBAGE comes after them)
+        final char type;    //Type of the tetromino. For example: 'T' , 'Z'
+        final Color color;
+
+        //Blocks of each rotation. First index is rotation, second index is block. Each block contains its coordinate in a 4x4 box.
+        //First index is x coordinate, Second index is y coordinate. Rotating right goes to the next rotation.
+        final int[][][] cells;
+
+        //Bounds of the first rotation. Helps to paint the shape in the next and hold areas.
+        final int left, top, width, height;
+
+        //Rows of each rotation as bit masks of the 4x4 box (Bit x of rowMasks[rotation][y] is the block at x, y) and the bounds
+        //of each rotation in the box. Used to check the collisions a row at a time
+        final int[][] rowMasks;
+        final int[] minX, maxX, minY, maxY;
+
+        PieceShape(int id, char type, Color color, int[][][] cells) {
+            this.id = id;
+            this.type = type;
+            this.color = color;
+            this.cells = cells;
+
+            rowMasks = new int[cells.length][4];
+            minX = new int[cells.length];
+            maxX = new int[cells.length];
+            minY = new int[cells.length];
+            maxY = new int[cells.length];
+            for (int rotation = 0; rotation < cells.length; rotation++) {
+                minX[rotation] = minY[rotation] = 4;
+                for (int[] cell : cells[rotation]) {
+                    rowMasks[rotation][cell[1]] |= 1 << cell[0];
+                    minX[rotation] = Math.min(minX[rotation], cell[0]);
+                    maxX[rotation] = Math.max(maxX[rotation], cell[0]);
+                    minY[rotation] = Math.min(minY[rotation], cell[1]);
+                    maxY[rotation] = Math.max(maxY[rotation], cell[1]);
                 }
             }
 
-            if(alive) {
-                checkStrike();   //Checks if it is a strike
-
-                //Generates the next Tetromino if the game is still continuing
-                if (!gameOver)
-                    generateRandomTetromino();
-
-                //Checks for GameOver
-                for (int i = 0; i < 10; i++) {
-                    if (gameGrid[i][4] != null && gameGrid[i][4].equals(this)) {
-                        System.out.println("GAME OVER");
-                        gameOver = true;
-                        gamePanel.add(gamePanel.gameOverLabel);
-                        gamePanel.add(gamePanel.pressEnterLabel);
-                        break;
-                    }
-                }
+            int minX = 4, minY = 4, maxX = 0, maxY = 0;
+            for (int[] cell : cells[0]) {
+                minX = Math.min(minX, cell[0]);
+                minY = Math.min(minY, cell[1]);
+                maxX = Math.max(maxX, cell[0]);
+                maxY = Math.max(maxY, cell[1]);
             }
+            left = minX;
+            top = minY;
+            width = maxX - minX + 1;
+            height = maxY - minY + 1;
         }
+    }
 
-        //Checks If The Tetromino Can Move To Left Or Right
-        //It Takes "moveLeft" Or "moveRight" As parameter
-        public boolean canMove(String direction){
-
-            //Checks if it can move to the left
-            if(direction.equals("moveLeft")) {
+    //Spawn position of the 4x4 box of every Tetromino on the standard board
+    static final int SPAWN_X = 3;
+    static final int SPAWN_Y = 2;
+
+    //Shapes of all the Tetrominoes. Blocks are listed in the same order in every rotation, so rotation keeps the blocks in place.
+    static final PieceShape[] SHAPES = {
+            new PieceShape(0, 'I', I_PieceColor, new int[][][]{
+                    {{0, 2}, {1, 2}, {2, 2}, {3, 2}},
+                    {{2, 3}, {2, 2}, {2, 1}, {2, 0}}}),
+            new PieceShape(1, 'J', J_PieceColor, new int[][][]{
+                    {{3, 3}, {3, 2}, {2, 2}, {1, 2}},
+                    {{1, 3}, {2, 3}, {2, 2}, {2, 1}},
+                    {{1, 1}, {1, 2}, {2, 2}, {3, 2}},
+                    {{3, 1}, {2, 1}, {2, 2}, {2, 3}}}),
+            new PieceShape(2, 'L', L_PieceColor, new int[][][]{
+                    {{1, 3}, {1, 2}, {2, 2}, {3, 2}},
+                    {{1, 1}, {2, 1}, {2, 2}, {2, 3}},
+                    {{3, 1}, {3, 2}, {2, 2}, {1, 2}},
+                    {{3, 3}, {2, 3}, {2, 2}, {2, 1}}}),
+            new PieceShape(3, 'O', O_PieceColor, new int[][][]{
+                    {{1, 3}, {2, 3}, {2, 2}, {1, 2}}}),
+            new PieceShape(4, 'S', S_PieceColor, new int[][][]{
+                    {{1, 3}, {2, 3}, {2, 2}, {3, 2}},
+                    {{3, 3}, {3, 2}, {2, 2}, {2, 1}}}),
+            new PieceShape(5, 'T', T_PieceColor, new int[][][]{
+                    {{1, 2}, {2, 2}, {3, 2}, {2, 3}},
+                    {{2, 1}, {2, 2}, {2, 3}, {1, 2}},
+                    {{3, 2}, {2, 2}, {1, 2}, {2, 1}},
+                    {{2, 3}, {2, 2}, {2, 1}, {3, 2}}}),
+            new PieceShape(6, 'Z', Z_PieceColor, new int[][][]{
+                    {{3, 3}, {2, 3}, {2, 2}, {1, 2}},
+                    {{3, 1}, {3, 2}, {2, 2}, {2, 3}}})
+    };
+
+    //Shape of the garbage rows of the versus mode. It is only used for placed blocks
+    static final PieceShape GARBAGE = new PieceShape(SHAPES.length, 'G', Color.GRAY, new int[][][]{{{0, 0}}});
+
+    //Returns The Shape With The Given Id
+    static PieceShape shapeOf(int id){
+        return id == GARBAGE.id ? GARBAGE : SHAPES[id];
+    }
 
-                //Checks the borders of the playArea
-                if (block0[0] != 0 && block1[0] != 0 && block2[0] != 0 && block3[0] != 0)
+    //Falling Tetromino. There Is Only One In The Game And It Is Reused Whenever A New Tetromino Spawns.
+    class Tetromino {
 
-                    //Checks if there is a Tetromino on the left side
-                    if(isCoordinateEmpty(block0[0] -1 , block0[1] , this) && (isCoordinateEmpty(block1[0] -1 , block1[1] , this)))
-                        if(isCoordinateEmpty(block2[0] -1 , block2[1] , this) && (isCoordinateEmpty(block3[0] -1 , block3[1] , this)))
-                            return true;
-            }
+        PieceShape shape = SHAPES[0];
+        int x;   //x coordinate of the 4x4 box
+        int y;   //y coordinate of the 4x4 box
+        int rotation;   //Stores the current rotation of the tetromino
+        boolean spawned;   //false between placing a Tetromino and spawning the next one. It could not be moved or painted then
 
-            //Checks if it can move to the right
-            if(direction.equals("moveRight")) {
+        //Places The Given Shape To The Spawn Position
+        public void spawn(PieceShape shape){
+            this.shape = shape;
+            x = spawnX;
+            y = spawnY;
+            rotation = 0;
+            spawned = true;
+        }
 
-                //Checks the borders of the playArea
-                if (block0[0] != 9 && block1[0] != 9 && block2[0] != 9 && block3[0] != 9)
+        //Checks If The Tetromino Fits Into The Given Position And Rotation. Each row of the shape is shifted to x and compared
+        //with the placed blocks of its row at once
+        public boolean fits(int x, int y, int rotation){
+            if (x + shape.minX[rotation] < 0 || x + shape.maxX[rotation] >= gridWidth
+                    || y + shape.minY[rotation] < 0 || y + shape.maxY[rotation] >= gridHeight)
+                return false;
 
-                    //Checks if there is a Tetromino on the right side
-                    if(isCoordinateEmpty(block0[0] +1 , block0[1] , this) && (isCoordinateEmpty(block1[0] +1 , block1[1] , this)))
-                        if(isCoordinateEmpty(block2[0] +1 , block2[1] , this) && (isCoordinateEmpty(block3[0] +1 , block3[1] , this)))
-                            return true;
+            int[] masks = shape.rowMasks[rotation];
+            for (int dy = shape.minY[rotation]; dy <= shape.maxY[rotation]; dy++) {
+                long mask = x >= 0 ? (long) masks[dy] << x : masks[dy] >>> -x;   //Blocks are inside the walls, nothing is shifted out
+                if ((rows[y + dy] & mask) != 0)
+                    return false;
             }
-            return false;
+            return true;
         }
 
         //Rotates Left
-        public void rotateLeft(){}
+        public void rotateLeft(){
+            int newRotation = (rotation + shape.cells.length - 1) % shape.cells.length;
+            if (spawned && fits(x, y, newRotation)) {
+                rotation = newRotation;
+                resetLockDelay();
+            }
+        }
 
         //Rotates Right
-        public void rotateRight(){}
-
-        //Moves The Tetromino One Block Left
-        public void moveLeft(){
-            if(canMove("moveLeft")) {
-                clearTetromino();  //Clears the current position from gameGrid
-                //Updates the coordinates
-                block0[0]--;
-                block1[0]--;
-                block2[0]--;
-                block3[0]--;
-                addTetromino();   //Adds the Tetromino to gameGrid
+        public void rotateRight(){
+            int newRotation = (rotation + 1) % shape.cells.length;
+            if (spawned && fits(x, y, newRotation)) {
+                rotation = newRotation;
+                resetLockDelay();
             }
         }
 
-        //Moves The Tetromino One Block Right
-        public void moveRight(){
-            if(canMove("moveRight")) {
-                //Clears the old one
-                clearTetromino();   //Clears the current position from gameGrid
-                //Updates the coordinates
-                block0[0]++;
-                block1[0]++;
-                block2[0]++;
-                block3[0]++;
-                addTetromino();   //Adds the Tetromino to gameGrid
-            }
+        //Moves The Tetromino One Block Left. Returns false If It Could Not Move
+        public boolean moveLeft(){
+            if (!spawned || !fits(x - 1, y, rotation))
+                return false;
+            x--;
+            resetLockDelay();
+            return true;
         }
 
-        //Clears The Tetromino From The Grid
-        public void clearTetromino(){
-            gameGrid[block0[0]][block0[1]] = null;
-            gameGrid[block1[0]][block1[1]] = null;
-            gameGrid[block2[0]][block2[1]] = null;
-            gameGrid[block3[0]][block3[1]] = null;
+        //Moves The Tetromino One Block Right. Returns false If It Could Not Move
+        public boolean moveRight(){
+            if (!spawned || !fits(x + 1, y, rotation))
+                return false;
+            x++;
+            resetLockDelay();
+            return true;
         }
 
-        //Updates The Tetromino's Coordinate In The Grid
-        public void addTetromino(){
-            gameGrid[block0[0]][block0[1]] = this;
-            gameGrid[block1[0]][block1[1]] = this;
-            gameGrid[block2[0]][block2[1]] = this;
-            gameGrid[block3[0]][block3[1]] = this;
+        //Moves The Tetromino One Block Down. Returns false If There Is Something Under
+        public boolean moveDown(){
+            if (!spawned || !fits(x, y + 1, rotation))
+                return false;
+            y++;
+
+            //Step reset
+            if (y > lowestRow) {
+                lowestRow = y;
+                if (gameMode.stepReset) {
+                    lockFrames = 0;
+                    lockResets = 0;
+                }
+            }
+            return true;
         }
     }
 
-    class I_Piece extends Tetromino{
-
-        public I_Piece(){
-            type = 'I';
-            rotation = 0;
-            color = I_PieceColor;
-
-            block0[0] = 3;
-            block0[1] = 4;
+    //Checks If The Coordinate In The "(x,y)" Is Empty.
+    public boolean isCoordinateEmpty(int x, int y) {
+        //Checks if it is in the borders
+        if(x<0 || x>=gridWidth || y<0 || y>=gridHeight)
+            return false;
 
-            block1[0] = 4;
-            block1[1] = 4;
+        //Returns false if there is a placed block in the specified coordinate.
+        return (rows[y] & (1L << x)) == 0;
+    }
 
-            block2[0] = 5;
-            block2[1] = 4;
+    //Returns The Shape Of The Placed Block In The Given Coordinate, Or null If It Is Empty
+    public PieceShape blockAt(int x, int y){
+        int cell = cells[y * gridWidth + x];
+        return cell == 0 ? null : shapeOf(cell - 1);
+    }
 
-            block3[0] = 6;
-            block3[1] = 4;
-        }
+    //Checks If The Tetromino Has Anything Under.
+    public boolean checkUnder(Tetromino tetromino){
+        return !tetromino.fits(tetromino.x, tetromino.y + 1, tetromino.rotation);
+    }
 
-        public void rotateLeft(){
-            clearTetromino();
+    //Checks If There Is Any Strike. If Yes Then Calls removeLine To Remove It
+    public void checkStrike(){
 
-            if (rotation == 0) {
-                if (isCoordinateEmpty(block0[0] + 2, block0[1] + 1, this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1], this)) {
-                        if (isCoordinateEmpty(block2[0], block2[1] - 1, this)) {
-                            if (isCoordinateEmpty(block3[0] - 1, block3[1] - 2, this)) {
-                                block0[0] = block0[0] + 2;
-                                block0[1] = block0[1] + 1;
+        //strikes = new ArrayList<>();
 
-                                block1[0] = block1[0] + 1;
+        //Moving from bottom to head. A line is full if its mask has every column
+        for(int i = gridHeight-1; i >= 0; i--){
+            if(rows[i] == fullRow && !strikes.contains(i))
+                strikes.add(i);
+        }
 
-                                block2[1] = block2[1] - 1;
+        if(!strikes.isEmpty()){
+            int strikeCount = 1;
+            int removedCount = 0;
+            int scoreBefore = score;
 
-                                block3[0] = block3[0] - 1;
-                                block3[1] = block3[1] - 2;
+            for(int k = 0; k < strikes.size()-1 ; k ++){
 
-                                rotated = true;
-                            }
-                        }
-                    }
+                if(strikes.get(k) == strikes.get(k+1)+1) {
+                    strikeCount++;
+                }else{
+                    score += calculateScore(strikeCount);
+                    strikeCount = 1;
                 }
+                removeLine(strikes.get(k)+removedCount);
+                removedCount++;
             }
+            score += calculateScore(strikeCount);
+            removeLine(strikes.get(strikes.size()-1)+removedCount);
 
-            if (rotation == 1) {
-                if (isCoordinateEmpty(block0[0] - 2, block0[1] - 1, this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1], this)) {
-                        if (isCoordinateEmpty(block2[0], block2[1] + 1, this)) {
-                            if (isCoordinateEmpty(block3[0] + 1, block3[1] + 2, this)) {
-                                block0[0] = block0[0] - 2;
-                                block0[1] = block0[1] - 1;
+            GameEvents.LineClear lineClearEvent = new GameEvents.LineClear();
+            if (lineClearEvent.isEnabled()) {
+                lineClearEvent.lines = (byte) strikes.size();
+                lineClearEvent.score = score - scoreBefore;
+                lineClearEvent.commit();
+            }
 
-                                block1[0] = block1[0] - 1;
+            if (gamePanel != null)
+                SwingUtilities.invokeLater(gamePanel::updateLabels);   //Labels are updated by the Swing thread. Game loop must not wait for it
 
+            log("lines: " + lines);
+            log("level: " + level);
+            log("score: " + score);
+            log("---------------");
 
-                                block2[1] = block2[1] + 1;
+            strikes = new ArrayList<>();
+        }
+    }
 
-                                block3[0] = block3[0] + 1;
-                                block3[1] = block3[1] + 2;
+    //Removes The lineNumber th Line And Moves Everything Above One Block Down
+    public void removeLine(int lineNumber){
 
-                                rotated = true;
-                            }
-                        }
-                    }
-                }
-            }
+        //Rows are stored one after another, so the rows above move down with one copy
+        System.arraycopy(rows, 0, rows, 1, lineNumber);
+        rows[0] = 0;
+        System.arraycopy(cells, 0, cells, gridWidth, lineNumber * gridWidth);
+        Arrays.fill(cells, 0, gridWidth, (byte) 0);
 
-            if (rotated) {
-                rotation = (rotation + 1) % 2;
-                rotated = false;
-            }
-            addTetromino();
+        lines ++;
+
+        //If lines parameter is multiple of 10, then Increases the level of the game (Gravity is read from the game mode)
+        if(lines%10 == 0) {
+            level++;
         }
+    }
+
+    //Creates The Gravity Of Each Level In Cells Per Frame. A Row Takes (0.8-(level*0.007))^level Seconds
+    static double[] createGravityTable(int levels){
+        double[] table = new double[levels];
 
-        public void rotateRight() {
-            rotateLeft();
+        for (int level = 0; level < levels; level++) {
+            double secondsPerRow = Math.pow((0.8 - (level * 0.007)), level);
+            table[level] = Math.min(MAX_GRAVITY, 1 / (secondsPerRow * FRAME_RATE));
         }
+        return table;
     }
 
-    class J_Piece extends Tetromino{
+    //Converts Frames Per Row Of Each Level Into Cells Per Frame
+    static double[] createGravityTable(int[] framesPerRow){
+        double[] table = new double[framesPerRow.length];
 
-        public J_Piece(){
-            type = 'J';
-            rotation = 0;
-            color = J_PieceColor;
+        for (int level = 0; level < framesPerRow.length; level++)
+            table[level] = 1.0 / framesPerRow[level];
+        return table;
+    }
 
-            block0[0] = 6;
-            block0[1] = 5;
+    //Returns The Gravity Of The Current Level In Cells Per Frame
+    public double currentGravity(){
+        return gameMode.gravity(level, softDropping);
+    }
 
-            block1[0] = 6;
-            block1[1] = 4;
+    //Returns The Time That The Current Tetromino Takes To Fall One Row In Milliseconds
+    public double gravityInterval(){
+        if (gameMode.framesPerRowTable != null)
+            return gameMode.framesPerRow(level, softDropping) * 1000 / gameMode.frameRate;
+        return 1000 / (currentGravity() * gameMode.frameRate);
+    }
 
-            block2[0] = 5;
-            block2[1] = 4;
+    //Calculates The Score Due To How Many Lines Struck
+    public int calculateScore(int lines){
+        String strike = STRIKE_NAMES[Math.min(lines, STRIKE_NAMES.length) - 1];
+        int strikeScore = gameMode.score(lines, level);
 
-            block3[0] = 4;
-            block3[1] = 4;
-        }
+        log(strike);
+        if (gamePanel != null) gamePanel.new strikeUpdater(strike, strikeScore);
+        return strikeScore;
+    }
 
-        public void rotateLeft(){
-            clearTetromino();
+    //Advances The Game One Frame. Moves The Current Tetromino Due To The Gravity And Locks It When It Stays On The Ground
+    public synchronized void tick(){
+        applyInputs();
 
-            if (rotation == 0) {
-                if (isCoordinateEmpty(block0[0], block0[1] - 2, this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
+        //Receives the messages of the match server. Versus game only runs while the match is being played
+        if (versus != null && !versus.poll(this))
+            return;
 
-                            block0[1] = block0[1] - 2;
+        if (gameOver || gamePaused)
+            return;
 
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] - 1;
+        //Time limit of the game mode
+        if (++frameCount == gameMode.timeLimitFrames) {
+            endGame();
+            return;
+        }
 
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
+        //Waits the entry delay (and the line clear delay) before spawning the next Tetromino
+        if (entryDelay > 0) {
+            if (--entryDelay == 0)
+                generateRandomTetromino();
+            return;
+        }
 
-                            rotated = true;
-                        }
-                    }
-                }
+        //Frame counted gravity. Tetromino moves one row after a fixed number of frames and it is placed when it could not move
+        if (gameMode.framesPerRowTable != null) {
+            if (++gravityFrames >= gameMode.framesPerRow(level, softDropping)) {
+                gravityFrames = 0;
+                if (!currentTetromino.moveDown())
+                    lockTetromino();
             }
+            return;
+        }
 
-            if (rotation == 1) {
-                if (isCoordinateEmpty(block0[0] + 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] + 2;
+        if (!checkUnder(currentTetromino)) {
+            gravityAccumulator += currentGravity();
 
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] - 1;
+            //Moves as many rows as the accumulated gravity allows
+            while (gravityAccumulator >= 1 && currentTetromino.moveDown())
+                gravityAccumulator--;
+            if (checkUnder(currentTetromino))
+                gravityAccumulator = 0;
+        }
+        //Gives time to move when reached bottom
+        else if (++lockFrames >= gameMode.lockDelayFrames) {
+            lockTetromino();
+        }
+    }
 
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] + 1;
+    //Restarts The Lock Delay After A Move Or Rotation, If The Tetromino Is On The Ground And The Reset Limit Is Not Reached
+    public void resetLockDelay(){
+        if (lockFrames > 0 && lockResets < gameMode.lockResetLimit && checkUnder(currentTetromino)) {
+            lockFrames = 0;
+            lockResets++;
+        }
+    }
 
-                            rotated = true;
-                        }
-                    }
-                }
-            }
+    //Places The Current Tetromino Into The cells. Then Removes The Strikes And Spawns The Next Tetromino
+    public void lockTetromino(){
+        if (finesse != null && autoPlayer == null)
+            finesse.pieceLocked(this);
 
-            if (rotation == 2) {
-                if (isCoordinateEmpty(block0[0], block0[1] + 2, this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
+        int bottom = 0;   //Lowest row of the Tetromino
+        for (int[] cell : currentTetromino.shape.cells[currentTetromino.rotation]) {
+            rows[currentTetromino.y + cell[1]] |= 1L << (currentTetromino.x + cell[0]);
+            cells[(currentTetromino.y + cell[1]) * gridWidth + currentTetromino.x + cell[0]] = (byte) (currentTetromino.shape.id + 1);
+            bottom = Math.max(bottom, currentTetromino.y + cell[1]);
+        }
+        currentTetromino.spawned = false;
+
+        GameEvents.Lock lockEvent = new GameEvents.Lock();
+        if (lockEvent.isEnabled()) {
+            lockEvent.shape = currentTetromino.shape.type;
+            lockEvent.x = (byte) currentTetromino.x;
+            lockEvent.y = (byte) currentTetromino.y;
+            lockEvent.rotation = (byte) currentTetromino.rotation;
+            lockEvent.commit();
+        }
+        GameEvents.Spawn nextSpawn = new GameEvents.Spawn();   //Enabled on its own, without the lock event
+        if (nextSpawn.isEnabled()) {
+            nextSpawn.begin();
+            spawnEvent = nextSpawn;
+        }
 
-                            block0[1] = block0[1] + 2;
+        int linesBefore = lines;
+        checkStrike();   //Checks if it is a strike
 
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] + 1;
+        if (versus != null)
+            exchangeGarbage(lines - linesBefore);
 
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 3) {
-                if (isCoordinateEmpty(block0[0] - 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] - 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
+        //Checks for GameOver (A block stays in the top row of the play area (or above it, pushed by garbage rows)
+        //or line goal of the game mode is reached)
+        for (int i = 0; i <= hiddenRows; i++) {
+            if (rows[i] != 0) {
+                endGame();
+                return;
             }
-
-            if (rotated) {
-                rotation = (rotation - 1) % 4;
-                if (rotation == -1) rotation = 3;
-                rotated = false;
-            }
-            addTetromino();
-
+        }
+        if (gameMode.lineGoal > 0 && lines >= gameMode.lineGoal) {
+            endGame();
+            return;
         }
 
-        public void rotateRight(){
-            clearTetromino();
-
-            if (rotation == 0) {
-                if (isCoordinateEmpty(block0[0] - 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] - 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 1) {
-
-                if (isCoordinateEmpty(block0[0], block0[1] - 2, this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
-
-                            block0[1] = block0[1] - 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 2) {
-                if (isCoordinateEmpty(block0[0] + 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] + 2;
-
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] - 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 3) {
-                if (isCoordinateEmpty(block0[0], block0[1] + 2, this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
-
-                            block0[1] = block0[1] + 2;
-
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotated) {
-                rotation = (rotation + 1) % 4;
-                rotated = false;
-            }
-            addTetromino();
+        //Generates the next Tetromino if the game is still continuing. Waits the delays of the game mode first
+        entryDelay = gameMode.entryDelay(gridHeight - 1 - bottom, lines > linesBefore);
+        if (entryDelay == 0)
+            generateRandomTetromino();
+    }
 
+    //Sends Garbage Rows For The Removed Lines. Received Garbage Rows Are Cancelled By Them First,
+    //And The Rest Is Added When A Tetromino Is Placed Without Removing A Line
+    public void exchangeGarbage(int removedLines){
+        int attack = GARBAGE_LINES[Math.min(removedLines, GARBAGE_LINES.length - 1)];
+        int cancelled = Math.min(attack, pendingGarbage);
+        pendingGarbage -= cancelled;
+
+        if (attack > cancelled)
+            versus.sendGarbage(attack - cancelled);
+        if (removedLines == 0 && pendingGarbage > 0) {
+            addGarbage(pendingGarbage, garbageHole);
+            pendingGarbage = 0;
         }
     }
 
-    class L_Piece extends Tetromino{
-
-        public L_Piece(){
-            type = 'L';
-            rotation = 0;
-            color = L_PieceColor;
-
-            block0[0] = 4;
-            block0[1] = 5;
-
-            block1[0] = 4;
-            block1[1] = 4;
-
-            block2[0] = 5;
-            block2[1] = 4;
+    //Stores The Garbage Rows Sent By An Opponent. Hole is between 0 And GARBAGE_HOLES (Exclusive) And It Is Mapped To A Column
+    public void receiveGarbage(int rows, int hole){
+        pendingGarbage += rows;
+        garbageHole = Math.floorMod(hole, GARBAGE_HOLES) * gridWidth / GARBAGE_HOLES;
+    }
 
-            block3[0] = 6;
-            block3[1] = 4;
+    //Pushes The Placed Blocks Up And Fills The Bottom Rows With Garbage Except The Hole Column
+    public void addGarbage(int count, int hole){
+        count = Math.min(count, gridHeight);
+        hole = Math.floorMod(hole, gridWidth);
+
+        System.arraycopy(rows, count, rows, 0, gridHeight - count);
+        System.arraycopy(cells, count * gridWidth, cells, 0, (gridHeight - count) * gridWidth);
+        for (int y = gridHeight - count; y < gridHeight; y++) {
+            rows[y] = fullRow & ~(1L << hole);
+            for (int x = 0; x < gridWidth; x++)
+                cells[y * gridWidth + x] = (byte) (x == hole ? 0 : GARBAGE.id + 1);
         }
-
-        public void rotateLeft(){
-            clearTetromino();
-
-            if (rotation == 0) {
-                if (isCoordinateEmpty(block0[0] + 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] + 2;
-
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 1) {
-
-                if (isCoordinateEmpty(block0[0], block0[1] + 2, this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] - 1, this)) {
-
-                            block0[1] = block0[1] + 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 2) {
-                if (isCoordinateEmpty(block0[0] - 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] - 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 3) {
-                if (isCoordinateEmpty(block0[0], block0[1] - 2, this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] + 1, this)) {
-
-                            block0[1] = block0[1] - 2;
-
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] - 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotated) {
-                rotation = (rotation - 1) % 4;
-
-                if (rotation == -1) rotation = 3;
-
-                rotated = false;
-            }
-            addTetromino();
-
     }
 
-        public void rotateRight() {
-            clearTetromino();
-
-            if (rotation == 0) {
-
-                if (isCoordinateEmpty(block0[0], block0[1] - 2, this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] + 1, this)) {
-
-                            block0[1] = block0[1] - 2;
-
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] - 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 1) {
-
-                if (isCoordinateEmpty(block0[0] + 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] + 2;
-
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 2) {
-
-                if (isCoordinateEmpty(block0[0], block0[1] + 2, this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] - 1, this)) {
-
-                            block0[1] = block0[1] + 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 3) {
-
-                if (isCoordinateEmpty(block0[0] - 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] - 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotated) {
-                rotation = (rotation + 1) % 4;
-                rotated = false;
-            }
-            addTetromino();
+    //Starts A Versus Match. Every player of the match gets the same seed, so they play the same Tetrominoes
+    public synchronized void startMatch(long seed){
+        randomState = seed;
+        pendingGarbage = 0;
+        resetGame();
+        if (gamePanel != null)
+            SwingUtilities.invokeLater(gamePanel::updateLabels);
+        log("Match started");
+    }
 
+    //Finishes The Game
+    public void endGame(){
+        log("GAME OVER");
+        spawnEvent = null;
+        GameEvents.GameOver gameOverEvent = new GameEvents.GameOver();
+        if (gameOverEvent.isEnabled()) {
+            gameOverEvent.score = score;
+            gameOverEvent.lines = lines;
+            gameOverEvent.frames = frameCount;
+            gameOverEvent.commit();
+        }
+        if (finesse != null && finesse.pieces > 0)
+            log(finesse.toString());
+        gameOver = true;
+        if (replay != null)
+            replay.finish(this);
+        if (versus != null)
+            versus.gameOver();
+        if (gamePanel != null) {
+            if (versus == null) {
+                //Files are written by STORAGE. Replay is not changed after it is finished and resetGame() starts a new one
+                int finalScore = score, finalLines = lines, finalLevel = level;
+                Replay finishedReplay = replay;
+                STORAGE.execute(() -> {
+                    deleteSavedGame();   //Finished game could not be continued
+                    recordScore(finalScore, finalLines, finalLevel);
+                    saveReplay(finishedReplay);
+                });
+            }
+            SwingUtilities.invokeLater(() -> {
+                gamePanel.showGameOver();
+            });
         }
-
     }
 
-    class O_Piece extends Tetromino{
-
-        public O_Piece(){
-            type = 'O';
-            color = O_PieceColor;
-
-            block0[0] = 4;
-            block0[1] = 5;
-
-            block1[0] = 5;
-            block1[1] = 5;
-
-            block2[0] = 5;
-            block2[1] = 4;
-
-            block3[0] = 4;
-            block3[1] = 4;
+    //Writes The Replay Of A Finished Game Into Replay.DIRECTORY
+    public void saveReplay(Replay replay){
+        if (replay == null)
+            return;
+        Path file = Replay.DIRECTORY.resolve(gameMode.name + "-" + System.currentTimeMillis() + ".replay");
+        try {
+            replay.write(file);
+            System.out.println("Replay: " + file);
+        } catch (IOException e) {
+            System.out.println("Replay could not be saved: " + e.getMessage());
         }
-
     }
 
-    class S_Piece extends Tetromino{
-
-        public S_Piece(){
-            type = 'S';
-            rotation = 0;
-            color = S_PieceColor;
-
-            block0[0] = 4;
-            block0[1] = 5;
-
-            block1[0] = 5;
-            block1[1] = 5;
-
-            block2[0] = 5;
-            block2[1] = 4;
+    //Adds The Score Of A Finished Game Into The Leaderboard Of The Game Mode And Prints The Best Scores
+    public void recordScore(int score, int lines, int level){
+        try {
+            if (leaderboard == null)
+                leaderboard = Leaderboard.open(gameMode);
+
+            int rank = leaderboard.add(score, lines, level, System.getProperty("user.name"));
+            System.out.println("rank: " + rank + " of " + leaderboard.size());
+            for (Leaderboard.Entry entry : leaderboard.top(5))
+                System.out.println(entry);
+        } catch (IOException e) {
+            System.out.println("Score could not be saved: " + e.getMessage());
+        }
+    }
 
-            block3[0] = 6;
-            block3[1] = 4;
+    //Calls tick() Once In Every Frame. Frame deadlines are calculated from the start time, so the frame rate does not drift.
+    public void runGameLoop(){
+        double frameNanos = 1_000_000_000 / gameMode.frameRate;
+        long startTime = System.nanoTime();
+        long frame = 0;
+
+        try {
+            while (true) {
+                frame++;
+                long remaining = startTime + (long) (frame * frameNanos) - System.nanoTime();
+
+                if (remaining > 0)
+                    Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                else if (remaining < -frameNanos) {
+                    //Too late (for ex. the computer was sleeping). Does not try to catch up the missed frames
+                    startTime = System.nanoTime();
+                    frame = 0;
+                }
+                tick();
+                Bot player = autoPlayer;
+                if (player != null)
+                    player.play(this);
+                Replay recording = replay;
+                if (recording != null)
+                    recording.tick(this);
+                if (spectators != null)
+                    spectators.publish(this);
+            }
+        } catch (InterruptedException e) {
+            //Game loop is stopped
         }
+    }
 
-        public void rotateLeft(){
+    //Randomly Generates Tetromino
+    public void generateRandomTetromino(){
 
-            clearTetromino();
+        //Queue must still have the preview after the current Tetromino is taken
+        if (queueSize <= previewCount)
+            refillQueue();
 
-            if (rotation == 0) {
-                if (isCoordinateEmpty(block0[0] + 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
+        int id = queue[queueHead];   //First element of the queue is current Tetromino
+        queueHead = (queueHead + 1) & (QUEUE_CAPACITY - 1);
+        queueSize--;
+        generateTetromino(SHAPES[id]);
 
-                            block0[0] = block0[0] + 2;
+        holdUsed = false;   //Resets the hold chance
+    }
 
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] - 1;
+    //Adds One Bag To The End Of The Queue. Bag of "new" rules is the 7 shapes shuffled, "classic" draws 7 independent shapes
+    void refillQueue(){
+        int tail = queueHead + queueSize;
 
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
+        for (int i = 0; i < SHAPES.length; i++)
+            queue[(tail + i) & (QUEUE_CAPACITY - 1)] = (byte) (gameMode.bag ? i : nextRandom(SHAPES.length));
 
-                            rotated = true;
-                        }
-                    }
-                }
+        //Fisher-Yates shuffle
+        if (gameMode.bag) {
+            for (int i = SHAPES.length - 1; i > 0; i--) {
+                int a = (tail + i) & (QUEUE_CAPACITY - 1);
+                int b = (tail + nextRandom(i + 1)) & (QUEUE_CAPACITY - 1);
+                byte temp = queue[a];
+                queue[a] = queue[b];
+                queue[b] = temp;
             }
+        }
+        queueSize += SHAPES.length;
+    }
 
-            if (rotation == 1) {
-                if (isCoordinateEmpty(block0[0] - 2, block0[1], this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] - 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
+    //Returns The Upcoming Tetromino At The Given Index Of The Queue (0 is the next Tetromino), Or null If The Queue Is Shorter
+    public PieceShape preview(int index){
+        if (index >= queueSize)
+            return null;
+        return SHAPES[queue[(queueHead + index) & (QUEUE_CAPACITY - 1)]];
+    }
 
-            if (rotated) {
-                rotation = (rotation + 1) % 2;
-                rotated = false;
-            }
-            addTetromino();
+    //Spawns The Given Shape As The Current Tetromino
+    public void generateTetromino(PieceShape shape){
+        gravityAccumulator = 0;
+        gravityFrames = 0;
+        lockFrames = 0;
+        lockResets = 0;
+        pieceCount++;
+        currentTetromino.spawn(shape);
+        lowestRow = currentTetromino.y;
+
+        //Block out. Game is over if the Tetromino could not spawn because placed blocks are there (VecEnv ends the same way)
+        if (!currentTetromino.fits(currentTetromino.x, currentTetromino.y, currentTetromino.rotation)) {
+            currentTetromino.spawned = false;
+            spawnEvent = null;
+            endGame();
+            return;
         }
 
-        public void rotateRight() {
-            rotateLeft();
+        //Duration of the event is the time since the lock. First Tetromino and the hold have no lock before them
+        GameEvents.Spawn spawn = spawnEvent != null ? spawnEvent : new GameEvents.Spawn();
+        spawnEvent = null;
+        if (spawn.isEnabled()) {
+            spawn.shape = shape.type;
+            spawn.piece = pieceCount;
+            spawn.commit();
         }
-
     }
 
-    class T_Piece extends Tetromino{
-
-        public T_Piece(){
-            type = 'T';
-            rotation = 0;
-            color = T_PieceColor;
-
-            block0[0] = 4;
-            block0[1] = 4;
+    //Returns A Random Number Between 0 (Inclusive) And bound (Exclusive). (SplitMix64 generator. Its whole state is randomState)
+    public int nextRandom(int bound){
+        randomState += RANDOM_STEP;
+        return randomNumber(randomState, bound);
+    }
 
-            block1[0] = 5;
-            block1[1] = 4;
+    //Returns The Random Number Of The Given Generator State. Other games without a Tetris object use the same generator
+    static int randomNumber(long state, int bound){
+        long z = state;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) ((z >>> 1) % bound);
+    }
 
-            block2[0] = 6;
-            block2[1] = 4;
+    //Holds The Current Tetromino. Only One Hold Could Be Used Until The Current Tetromino Is Placed
+    public synchronized void hold(){
+        if (holdUsed || gameOver || gamePaused || !currentTetromino.spawned)
+            return;
 
-            block3[0] = 5;
-            block3[1] = 5;
+        //If it is the first hold input
+        if (holdTetromino == null) {
+            holdTetromino = currentTetromino.shape;
+            generateRandomTetromino();
         }
-
-        public void rotateLeft(){
-            clearTetromino();
-
-            if (rotation == 0) {
-                if (isCoordinateEmpty(block0[0] + 1, block0[1] + 1, this)) {
-                    if (isCoordinateEmpty(block2[0] - 1, block2[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] + 1;
-                            block0[1] = block0[1] + 1;
-
-                            block2[0] = block2[0] - 1;
-                            block2[1] = block2[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 1) {
-                if (isCoordinateEmpty(block0[0] - 1, block0[1] + 1, this)) {
-                    if (isCoordinateEmpty(block2[0] + 1, block2[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] - 1;
-                            block0[1] = block0[1] + 1;
-
-                            block2[0] = block2[0] + 1;
-                            block2[1] = block2[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 2) {
-                if (isCoordinateEmpty(block0[0] - 1, block0[1] - 1, this)) {
-                    if (isCoordinateEmpty(block2[0] + 1, block2[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] - 1;
-                            block0[1] = block0[1] - 1;
-
-                            block2[0] = block2[0] + 1;
-                            block2[1] = block2[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 3) {
-                if (isCoordinateEmpty(block0[0] + 1, block0[1] - 1, this)) {
-                    if (isCoordinateEmpty(block2[0] - 1, block2[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] + 1;
-                            block0[1] = block0[1] - 1;
-
-                            block2[0] = block2[0] - 1;
-                            block2[1] = block2[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotated) {
-                rotation = (rotation - 1) % 4;
-                if (rotation == -1) rotation = 3;
-                rotated = false;
-            }
-            addTetromino();
+        //If there is already a hold Tetromino
+        else {
+            PieceShape temp = holdTetromino;
+            holdTetromino = currentTetromino.shape;
+            generateTetromino(temp);
         }
+        holdUsed = true;  //Sets holdUsed to true to prevent using hold operation again
 
-        public void rotateRight(){
-            clearTetromino();
-
-            if (rotation == 0) {
-
-                if (isCoordinateEmpty(block0[0] + 1, block0[1] - 1, this)) {
-                    if (isCoordinateEmpty(block2[0] - 1, block2[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] + 1;
-                            block0[1] = block0[1] - 1;
-
-                            block2[0] = block2[0] - 1;
-                            block2[1] = block2[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 1) {
-
-                if (isCoordinateEmpty(block0[0] + 1, block0[1] + 1, this)) {
-                    if (isCoordinateEmpty(block2[0] - 1, block2[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] - 1, this)) {
-
-                            block0[0] = block0[0] + 1;
-                            block0[1] = block0[1] + 1;
-
-                            block2[0] = block2[0] - 1;
-                            block2[1] = block2[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 2) {
-
-                if (isCoordinateEmpty(block0[0] - 1, block0[1] + 1, this)) {
-                    if (isCoordinateEmpty(block2[0] + 1, block2[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] - 1;
-                            block0[1] = block0[1] + 1;
-
-                            block2[0] = block2[0] + 1;
-                            block2[1] = block2[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotation == 3) {
-
-                if (isCoordinateEmpty(block0[0] - 1, block0[1] - 1, this)) {
-                    if (isCoordinateEmpty(block2[0] + 1, block2[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] + 1, this)) {
-
-                            block0[0] = block0[0] - 1;
-                            block0[1] = block0[1] - 1;
-
-                            block2[0] = block2[0] + 1;
-                            block2[1] = block2[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] + 1;
-
-                            rotated = true;
-                        }
-                    }
-                }
-            }
-
-            if (rotated) {
-                rotation = (rotation + 1) % 4;
-                rotated = false;
-            }
-            addTetromino();
+        GameEvents.Hold holdEvent = new GameEvents.Hold();
+        if (holdEvent.isEnabled()) {
+            holdEvent.shape = holdTetromino.type;
+            holdEvent.commit();
         }
-
     }
 
-    class Z_Piece extends Tetromino{
-
-        public Z_Piece(){
-            type = 'Z';
-            rotation = 0;
-            color = Z_PieceColor;
-
-            block0[0] = 6;
-            block0[1] = 5;
+    //Moves The Current Tetromino Until It Reaches To Bottom And Places It
+    public synchronized void hardDrop(){
+        if (gameOver || gamePaused || !currentTetromino.spawned)
+            return;
 
-            block1[0] = 5;
-            block1[1] = 5;
-
-            block2[0] = 5;
-            block2[1] = 4;
+        while (currentTetromino.moveDown()) {/* Moving */}
+        lockTetromino();
+    }
 
-            block3[0] = 4;
-            block3[1] = 4;
+    //Starts A New Game
+    public synchronized void resetGame(){
+        score = 0;
+        level = 0;
+        lines = 0;
+        frameCount = 0;
+        pieceCount = 0;
+        entryDelay = 0;
+        softDropping = false;
+        if (finesse != null)
+            finesse.reset();
+        Arrays.fill(rows, 0);
+        Arrays.fill(cells, (byte) 0);
+        queueSize = 0;
+        holdTetromino = null;
+        gameOver = false;
+        synchronized (inputQueue) {
+            inputQueueSize = 0;   //Inputs of the previous game
         }
+        startReplay();
+        generateRandomTetromino();
+    }
 
-        public void rotateLeft(){
-            clearTetromino();
-
-            if (rotation == 0) {
-                if (isCoordinateEmpty(block0[0], block0[1] - 2, this)) {
-                    if (isCoordinateEmpty(block1[0] + 1, block1[1] - 1, this)) {
-                        if (isCoordinateEmpty(block3[0] + 1, block3[1] + 1, this)) {
-
-                            block0[1] = block0[1] - 2;
-
-                            block1[0] = block1[0] + 1;
-                            block1[1] = block1[1] - 1;
-
-                            block3[0] = block3[0] + 1;
-                            block3[1] = block3[1] + 1;
+    /* Snapshots. Whole state of the game in a compact binary form. Used for saving the game and copying it. */
+    //Writes The State Of The Game Into The Buffer
+    public synchronized void writeSnapshot(ByteBuffer buffer){
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.put((byte) gameMode.id);
+        buffer.put((byte) gridWidth);
+        buffer.put((byte) gridHeight);
+        buffer.put((byte) hiddenRows);
+
+        //Placed blocks column by column. 0 is empty, others are shape id + 1
+        for (int x = 0; x < gridWidth; x++)
+            for (int y = 0; y < gridHeight; y++)
+                buffer.put(cells[y * gridWidth + x]);
+
+        buffer.put((byte) currentTetromino.shape.id);
+        buffer.put((byte) currentTetromino.x);
+        buffer.put((byte) currentTetromino.y);
+        buffer.put((byte) currentTetromino.rotation);
+        buffer.put((byte) (currentTetromino.spawned ? 1 : 0));
+
+        buffer.put((byte) (holdTetromino == null ? -1 : holdTetromino.id));
+        buffer.put((byte) (holdUsed ? 1 : 0));
+        buffer.put((byte) queueSize);
+        for (int i = 0; i < queueSize; i++)
+            buffer.put(queue[(queueHead + i) & (QUEUE_CAPACITY - 1)]);
+
+        buffer.putInt(score);
+        buffer.putInt(level);
+        buffer.putInt(lines);
+        buffer.putLong(randomState);
+        buffer.putDouble(gravityAccumulator);
+        buffer.putInt(lockFrames);
+        buffer.putInt(lockResets);
+        buffer.putInt(lowestRow);
+        buffer.putInt(gravityFrames);
+        buffer.putInt(entryDelay);
+        buffer.putInt(frameCount);
+        buffer.putInt(pieceCount);
+        buffer.putInt(pendingGarbage);
+        buffer.put((byte) garbageHole);
+        buffer.put((byte) (gameOver ? 1 : 0));
+    }
 
-                            rotated = true;
-                        }
-                    }
+    //Reads The State Of The Game From The Buffer. Returns false (And Does Not Change The Game) If It Is Not A Valid Snapshot Of This Game Mode
+    public synchronized boolean readSnapshot(ByteBuffer buffer){
+        int start = buffer.position();
+        try {
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.get() != gameMode.id)
+                return false;
+            if (buffer.get() != gridWidth || buffer.get() != gridHeight || buffer.get() != hiddenRows)
+                return false;   //Saved on another board
+
+            //Reads and checks the whole snapshot before changing anything
+            int blocksPosition = buffer.position();
+            for (int i = 0; i < cells.length; i++) {
+                int block = buffer.get();
+                if (block < 0 || block > GARBAGE.id + 1)
+                    return false;
+            }
+
+            int shape = buffer.get();
+            int x = buffer.get();
+            int y = buffer.get();
+            int rotation = buffer.get();
+            boolean spawned = buffer.get() == 1;
+            if (shape < 0 || shape >= SHAPES.length || rotation < 0 || rotation >= SHAPES[shape].cells.length)
+                return false;
+            if (x < -3 || x >= gridWidth || y < -3 || y >= gridHeight)
+                return false;
+            if (spawned) {
+                //Falling Tetromino must be inside the grid and must not overlap the placed blocks
+                for (int[] cell : SHAPES[shape].cells[rotation]) {
+                    int cellX = x + cell[0];
+                    int cellY = y + cell[1];
+                    if (cellX < 0 || cellX >= gridWidth || cellY < 0 || cellY >= gridHeight
+                            || buffer.get(blocksPosition + cellX * gridHeight + cellY) != 0)
+                        return false;
                 }
             }
 
-            if (rotation == 1) {
-                if (isCoordinateEmpty(block0[0], block0[1] + 2, this)) {
-                    if (isCoordinateEmpty(block1[0] - 1, block1[1] + 1, this)) {
-                        if (isCoordinateEmpty(block3[0] - 1, block3[1] - 1, this)) {
-
-                            block0[1] = block0[1] + 2;
-
-                            block1[0] = block1[0] - 1;
-                            block1[1] = block1[1] + 1;
-
-                            block3[0] = block3[0] - 1;
-                            block3[1] = block3[1] - 1;
-
-                            rotated = true;
-                        }
-                    }
+            int hold = buffer.get();
+            boolean savedHoldUsed = buffer.get() == 1;
+            int savedQueueSize = buffer.get();
+            if (hold < -1 || hold >= SHAPES.length || savedQueueSize < 0 || savedQueueSize > QUEUE_CAPACITY)
+                return false;
+            int queuePosition = buffer.position();
+            for (int i = 0; i < savedQueueSize; i++) {
+                int id = buffer.get();
+                if (id < 0 || id >= SHAPES.length)
+                    return false;
+            }
+
+            int savedScore = buffer.getInt();
+            int savedLevel = buffer.getInt();
+            int savedLines = buffer.getInt();
+            long savedRandomState = buffer.getLong();
+            double savedGravityAccumulator = buffer.getDouble();
+            int savedLockFrames = buffer.getInt();
+            int savedLockResets = buffer.getInt();
+            int savedLowestRow = buffer.getInt();
+            int savedGravityFrames = buffer.getInt();
+            int savedEntryDelay = buffer.getInt();
+            int savedFrameCount = buffer.getInt();
+            int savedPieceCount = buffer.getInt();
+            int savedPendingGarbage = buffer.getInt();
+            int savedGarbageHole = buffer.get();
+            boolean savedGameOver = buffer.get() == 1;
+            if ((savedScore | savedLevel | savedLines | savedLockFrames | savedLockResets | savedGravityFrames | savedEntryDelay
+                    | savedFrameCount | savedPieceCount | savedPendingGarbage) < 0 || Double.isNaN(savedGravityAccumulator))
+                return false;
+            int end = buffer.position();
+
+            //Snapshot is valid. Copies the blocks and the queue and assigns the fields
+            buffer.position(blocksPosition);
+            Arrays.fill(rows, 0);
+            for (int column = 0; column < gridWidth; column++)
+                for (int row = 0; row < gridHeight; row++) {
+                    cells[row * gridWidth + column] = buffer.get();
+                    if (cells[row * gridWidth + column] != 0)
+                        rows[row] |= 1L << column;
                 }
-            }
-
-            if (rotated) {
-                rotation = (rotation + 1) % 2;
-                rotated = false;
-            }
-            addTetromino();
-        }
-
-        public void rotateRight() {
-            rotateLeft();
+            queueHead = 0;
+            queueSize = savedQueueSize;
+            for (int i = 0; i < savedQueueSize; i++)
+                queue[i] = buffer.get(queuePosition + i);
+            buffer.position(end);
+
+            currentTetromino.shape = SHAPES[shape];
+            currentTetromino.x = x;
+            currentTetromino.y = y;
+            currentTetromino.rotation = rotation;
+            currentTetromino.spawned = spawned;
+            holdTetromino = hold == -1 ? null : SHAPES[hold];
+            holdUsed = savedHoldUsed;
+
+            score = savedScore;
+            level = savedLevel;
+            lines = savedLines;
+            randomState = savedRandomState;
+            gravityAccumulator = savedGravityAccumulator;
+            lockFrames = savedLockFrames;
+            lockResets = savedLockResets;
+            lowestRow = savedLowestRow;
+            gravityFrames = savedGravityFrames;
+            entryDelay = savedEntryDelay;
+            frameCount = savedFrameCount;
+            pieceCount = savedPieceCount;
+            pendingGarbage = savedPendingGarbage;
+            garbageHole = savedGarbageHole;
+            gameOver = savedGameOver;
+            softDropping = false;
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            buffer.position(start);
+            return false;
         }
-
     }
 
-    //Checks If The Coordinate In The "(x,y)" Is Empty. Takes Tetromino As A Parameter To Prevent Seeing Itself As A Block
-    public boolean isCoordinateEmpty(int x, int y, Tetromino tetromino) {
-        //Checks if it is in the borders
-        if(x<0 || x>9 || y<0 || y>23)
-            return false;
+    //Returns The Max Size Of A Snapshot In Bytes
+    int snapshotSize(){
+        return 128 + cells.length + QUEUE_CAPACITY;
+    }
 
-        //Returns false if there is another Tetromino in the specified coordinate.
-        return !(gameGrid[x][y] != null && !gameGrid[x][y].equals(tetromino));
+    //Returns A Copy Of The Game Without Window And Threads
+    public synchronized Tetris copy(){
+        Tetris copy = new Tetris(gameMode, 0, gridWidth, gridHeight - hiddenRows, hiddenRows);
+        snapshotBuffer.clear();
+        writeSnapshot(snapshotBuffer);
+        snapshotBuffer.flip();
+        copy.readSnapshot(snapshotBuffer);
+        return copy;
     }
 
-    //Checks If The Tetromino Has Anything Under.
-    public boolean checkUnder(Tetromino tetromino){
+    //Saves The Game Into SAVE_FILE. Finished games and versus games are not saved. File is written by STORAGE, after the
+    //delete of the previous game
+    public synchronized void saveGame(){
+        if (gameOver || versus != null)
+            return;
+
+        ByteBuffer buffer = ByteBuffer.allocate(snapshotSize());
+        writeSnapshot(buffer);
+        byte[] snapshot = Arrays.copyOf(buffer.array(), buffer.position());
+        STORAGE.execute(() -> {
+            try {
+                Files.createDirectories(SAVE_FILE.getParent());
+                Files.write(SAVE_FILE, snapshot);
+            } catch (IOException e) {
+                System.out.println("Game could not be saved: " + e.getMessage());
+            }
+        });
+    }
 
-        //Checks the borders
-        if(tetromino.block0[1]+1 == 24 || tetromino.block1[1]+1 == 24 || tetromino.block2[1]+1 == 24 || tetromino.block3[1]+1 == 24){
-            return true;
+    //Restores The Game From SAVE_FILE. Returns false If There Is No Saved Game
+    public synchronized boolean loadGame(){
+        try {
+            return Files.exists(SAVE_FILE) && readSnapshot(ByteBuffer.wrap(Files.readAllBytes(SAVE_FILE))) && !gameOver;
+        } catch (IOException e) {
+            System.out.println("Saved game could not be loaded: " + e.getMessage());
+            return false;
         }
+    }
 
-        //One unit below of the blocks is checked
-        if(!isCoordinateEmpty(tetromino.block0[0],tetromino.block0[1]+1,tetromino)) {
-            return true;
-        }
-        else if(!isCoordinateEmpty(tetromino.block1[0],tetromino.block1[1]+1,tetromino)) {
-            return true;
+    //Deletes The Saved Game
+    public void deleteSavedGame(){
+        try {
+            Files.deleteIfExists(SAVE_FILE);
+        } catch (IOException e) {
+            System.out.println("Saved game could not be deleted: " + e.getMessage());
         }
-        else if(!isCoordinateEmpty(tetromino.block2[0],tetromino.block2[1]+1,tetromino)) {
-            return true;
-        }
-        else if(!isCoordinateEmpty(tetromino.block3[0],tetromino.block3[1]+1,tetromino)) {
-            return true;
-        }
-        return false;
     }
 
-    //Checks If There Is Any Strike. If Yes Then Calls removeLine To Remove It
-    public void checkStrike(){
-
-        //strikes = new ArrayList<>();
-
-        int i=gameGrid[0].length-1;
+    //Prints The Event Of The Game
+    void log(String message){
+        if (logEvents)
+            System.out.println(message);
+    }
 
-        //Moving from bottom to head
-        while(i>=0){
+    //Queues An Input Of The Player. It is applied at the start of the next tick() (Could be called by any thread)
+    public void input(byte input){
+        input(input, false);
+    }
 
-            //Traverses across the i-th line
-            for(int j = 0 ; j < gameGrid.length ; j++){
-                if(gameGrid[j][i] == null) {
-                    break;
-                }
-                else{
-                    //Line is full
-                    if(j==9) {
-                        if(!strikes.contains(i)) strikes.add(i);
-                    }
-                }
-            }
-            i--;
+    //Queues An Input. repeated Is true If It Is The Key Repeat Of A Held Key (Only used by finesse, replays do not have it)
+    public void input(byte input, boolean repeated){
+        if (gameOver)
+            return;
+        long now = inputLatency != null ? System.nanoTime() : 0;
+
+        synchronized (inputQueue) {
+            if (inputQueueSize == INPUT_QUEUE_CAPACITY) {
+                droppedInputs++;
+                return;
+            }
+            int index = (inputQueueHead + inputQueueSize) & (INPUT_QUEUE_CAPACITY - 1);
+            inputQueue[index] = input;
+            inputQueueNanos[index] = now;
+            inputQueueRepeated[index] = repeated;
+            inputQueueSize++;
         }
+    }
 
-        if(!strikes.isEmpty()){
-            int strikeCount = 1;
-            int removedCount = 0;
-
-            for(int k = 0; k < strikes.size()-1 ; k ++){
-
-                if(strikes.get(k) == strikes.get(k+1)+1) {
-                    strikeCount++;
-                }else{
-                    score += calculateScore(strikeCount);
-                    strikeCount = 1;
-                }
-                removeLine(strikes.get(k)+removedCount);
-                removedCount++;
-            }
-            score += calculateScore(strikeCount);
-            removeLine(strikes.get(strikes.size()-1)+removedCount);
-
-            gamePanel.updateLabels();
-
-            System.out.println("lines: " + lines);
-            System.out.println("level: " + level);
-            System.out.println("score: " + score);
-            System.out.println("---------------");
-
-            strikes = new ArrayList<>();
+    //Applies The Queued Inputs In The Order They Are Given. Called by tick() before the frame
+    void applyInputs(){
+        while (true) {
+            byte input;
+            long queued;
+            boolean repeated;
+            synchronized (inputQueue) {
+                if (inputQueueSize == 0)
+                    return;
+                input = inputQueue[inputQueueHead];
+                queued = inputQueueNanos[inputQueueHead];
+                repeated = inputQueueRepeated[inputQueueHead];
+                inputQueueHead = (inputQueueHead + 1) & (INPUT_QUEUE_CAPACITY - 1);
+                inputQueueSize--;
+            }
+            applyInput(input, repeated);
+
+            LongConsumer latency = inputLatency;
+            if (latency != null && queued != 0)
+                latency.accept(System.nanoTime() - queued);
         }
     }
 
-    //Removes The lineNumber th Line And Moves Everything Above One Block Down
-    public void removeLine(int lineNumber){
+    //Applies An Input Of The Player And Records It Into The Replay. Paused game only takes the soft drop release
+    void applyInput(byte input, boolean repeated){
+        if (gameOver || (gamePaused && input != Replay.SOFT_DROP_RELEASE))
+            return;
+        if (replay != null)
+            replay.input(frameCount, input);
+        int x = currentTetromino.x;
+        int rotation = currentTetromino.rotation;
+
+        switch (input) {
+            case Replay.LEFT: currentTetromino.moveLeft(); break;
+            case Replay.RIGHT: currentTetromino.moveRight(); break;
+            case Replay.ROTATE_LEFT: currentTetromino.rotateLeft(); break;
+            case Replay.ROTATE_RIGHT: currentTetromino.rotateRight(); break;
+            //Increases the gravity of the current Tetromino if there is nothing under
+            case Replay.SOFT_DROP: if (!checkUnder(currentTetromino)) softDropping = true; break;
+            case Replay.SOFT_DROP_RELEASE: softDropping = false; break;
+            case Replay.HOLD: if (gameMode.hold) hold(); break;
+            case Replay.HARD_DROP: if (gameMode.hardDrop) hardDrop(); break;
+        }
 
-        for(int i = 0 ; i < gameGrid.length ; i++){
-            gameGrid[i][lineNumber] = null;
+        //Moves and rotations are counted for finesse here, so they belong to the Tetromino that they moved
+        if (finesse != null && autoPlayer == null && input <= Replay.ROTATE_RIGHT)   //Moves and rotations
+            finesse.inputApplied(this, input, repeated, currentTetromino.x != x || currentTetromino.rotation != rotation);
+    }
 
-            for(int j = lineNumber; j > 0 ; j--) {
-                gameGrid[i][j] = gameGrid[i][j-1];  //Moving the block
-            }
-            gameGrid[i][0] = null;
-        }
+    //Starts Recording A New Game. Called before its first Tetromino is generated
+    void startReplay(){
+        replay = recordReplays && versus == null && standardBoard() ? new Replay(gameMode.id, randomState) : null;
+    }
 
-        lines ++;
+    //Returns A Hash Of The Board, The Tetrominoes, The Score And The Upcoming Tetromino (FNV-1a). State of the generator is
+    //not hashed, because it depends on the preview count (A deeper preview refills the queue earlier)
+    public synchronized long stateHash(){
+        long hash = 0xCBF29CE484222325L;
+        for (int x = 0; x < gridWidth; x++)   //Column by column, like the snapshot
+            for (int y = 0; y < gridHeight; y++)
+                hash = (hash ^ cells[y * gridWidth + x]) * 0x100000001B3L;
+
+        hash = mix(hash, currentTetromino.shape.id);
+        hash = mix(hash, currentTetromino.x);
+        hash = mix(hash, currentTetromino.y);
+        hash = mix(hash, currentTetromino.rotation);
+        hash = mix(hash, currentTetromino.spawned ? 1 : 0);
+        hash = mix(hash, holdTetromino == null ? -1 : holdTetromino.id);
+        hash = mix(hash, score);
+        hash = mix(hash, lines);
+        hash = mix(hash, level);
+        hash = mix(hash, frameCount);
+        hash = mix(hash, pieceCount);
+        return mix(hash, queueSize > 0 ? queue[queueHead] : -1);
+    }
 
-        //Uf lines parameter is multiple of 10, then Increases the level of the game and updates gameSpeed
-        if(lines%10 == 0) {
-            level++;
-            gameSpeed = Math.pow((0.8 - ((level) * 0.007)), level);
-        }
+    static long mix(long hash, long value){
+        return (hash ^ value) * 0x100000001B3L;
     }
 
-    //Calculates The Score Due To How Many Lines Struck
-    public int calculateScore(int lines){
+    /* Game State */
+    public int getFrameCount(){
+        return frameCount;
+    }
 
-        if(lines == 1){
-            System.out.println("Single");
-            gamePanel.new strikeUpdater("Single",40*(level+1));
-            return 40*(level+1);
-        }else if(lines ==2){
-            System.out.println("Double");
-            gamePanel.new strikeUpdater("Double",100*(level+1));
-            return 100*(level+1);
-        }else if(lines ==3){
-            System.out.println("Triple");
-            gamePanel.new strikeUpdater("Triple",300*(level+1));
-            return 300*(level+1);
-        }else{
-            System.out.println("TETRIS!");
-            gamePanel.new strikeUpdater("TETRIS!",1200*(level+1));
-            return 1200*(level+1);
-        }
+    public int getEntryDelay(){
+        return entryDelay;
     }
 
-    //Randomly Generates Tetromino
-    public void generateRandomTetromino(){
-        Random generator = new Random();
+    public int getScore(){
+        return score;
+    }
 
-        //Randomly selects two tetrominoes. One is for the next Tetromino and one is for the current Tetromino
-        while(tetrominoes.size() < 2) {
-            int randomNum = generator.nextInt(7);
+    public int getLevel(){
+        return level;
+    }
 
-            if (randomNum == 0)
-                 tetrominoes.add(new I_Piece());
+    public int getLines(){
+        return lines;
+    }
 
-            else if (randomNum == 1)
-                tetrominoes.add(new J_Piece());
+    public int getPieceCount(){
+        return pieceCount;
+    }
 
-            else if (randomNum == 2)
-                tetrominoes.add(new L_Piece());
+    public GameMode getGameMode(){
+        return gameMode;
+    }
 
-            else if (randomNum == 3)
-                tetrominoes.add(new O_Piece());
+    //Increases The Gravity Of The Current Tetromino Until It Is Set To false (Same As Holding The Down Arrow Key)
+    public synchronized void setSoftDropping(boolean softDropping){
+        this.softDropping = softDropping;
+    }
 
-            else if (randomNum == 4)
-                tetrominoes.add(new S_Piece());
+    /* Versus */
+    //Connection Of A Versus Game To Its Opponents. Its Methods Are Called While The Game Is Locked
+    interface Versus {
+        void join(GameMode gameMode);   //Asks for a match
+        boolean poll(Tetris game);   //Called in every frame. Returns true while the match is being played
+        void sendGarbage(int rows);
+        void gameOver();   //Game of the player is over
+    }
 
-            else if (randomNum == 5)
-                tetrominoes.add(new T_Piece());
+    /* Game Modes */
+    //Rules Of A Game Mode. It Is Resolved Once When The Game Is Created, So The Game Does Not Compare Strings While Playing.
+    //New modes could be added into MODES without changing the rest of the game.
+    static final class GameMode {
+
+        final int id;   //Index of the mode in MODES. Saved with the game
+        final String name;
+        final boolean hold;   //Allows to hold the current Tetromino
+        final boolean hardDrop;   //Allows to hard drop the current Tetromino
+        final boolean ghost;   //Shows where the current Tetromino will fall
+        final boolean bag;   //Tetrominoes come in shuffled bags of the 7 shapes. Otherwise every Tetromino is random
+        final double[] gravityTable;   //Gravity of each level in cells per frame. Higher levels use the last entry
+        final double softDropGravity;
+        final int lockDelayFrames;   //Frames that a Tetromino could stay on the ground before it is placed
+        final int lockResetLimit;   //Moves and rotations on the ground that could restart the lock delay
+        final boolean stepReset;   //Restarts the lock delay (and the reset limit) when the Tetromino reaches a lower row
+        final double frameRate;   //Frames per second
+        final int[] framesPerRowTable;   //Frame counted gravity of each level (frames per row). null means gravityTable is used
+        final int softDropFramesPerRow;   //Frame counted soft drop speed
+        final int entryDelayFrames;   //Frames before the next Tetromino spawns when a Tetromino is placed at the bottom
+        final int entryDelayStep;   //Additional entry delay for every 4 rows higher (up to 4 steps)
+        final int lineClearDelayFrames;   //Additional delay when a line is removed
+        final int[] lineScores;   //Score of 1, 2, 3 and 4 lines at level 0. It is multiplied by (level+1)
+        final int lineGoal;   //Game ends when that many lines are removed. 0 means there is no goal
+        final int timeLimitFrames;   //Game ends after that many frames. 0 means there is no limit
+
+        //Creates A Mode With The Rules Of "new" Mode And The Given Goal
+        GameMode(int id, String name, int lineGoal, int timeLimitFrames) {
+            this(id, name, true, true, true, true, GRAVITY, SOFT_DROP_GRAVITY, LOCK_DELAY_FRAMES, LOCK_RESET_LIMIT, true, SCORES, lineGoal, timeLimitFrames,
+                    FRAME_RATE, null, 0, 0, 0, 0);
+        }
 
-            else if (randomNum == 6)
-                tetrominoes.add(new Z_Piece());
+        GameMode(int id, String name, boolean hold, boolean hardDrop, boolean ghost, boolean bag, double[] gravityTable, double softDropGravity,
+                 int lockDelayFrames, int lockResetLimit, boolean stepReset, int[] lineScores, int lineGoal, int timeLimitFrames,
+                 double frameRate, int[] framesPerRowTable, int softDropFramesPerRow, int entryDelayFrames, int entryDelayStep,
+                 int lineClearDelayFrames) {
+            this.id = id;
+            this.name = name;
+            this.hold = hold;
+            this.hardDrop = hardDrop;
+            this.ghost = ghost;
+            this.bag = bag;
+            this.gravityTable = gravityTable;
+            this.softDropGravity = softDropGravity;
+            this.lockDelayFrames = lockDelayFrames;
+            this.lockResetLimit = lockResetLimit;
+            this.stepReset = stepReset;
+            this.lineScores = lineScores;
+            this.lineGoal = lineGoal;
+            this.timeLimitFrames = timeLimitFrames;
+            this.frameRate = frameRate;
+            this.framesPerRowTable = framesPerRowTable;
+            this.softDropFramesPerRow = softDropFramesPerRow;
+            this.entryDelayFrames = entryDelayFrames;
+            this.entryDelayStep = entryDelayStep;
+            this.lineClearDelayFrames = lineClearDelayFrames;
         }
 
-        currentTetromino = tetrominoes.poll();   //First element of the queue is current Tetromino
-        nextTetromino = tetrominoes.peek().type;   //Second element (now there is only one) of the queue is next Tetromino
+        //Returns The Gravity Of The Given Level In Cells Per Frame
+        double gravity(int level, boolean softDropping){
+            double gravity = gravityTable[Math.min(level, gravityTable.length-1)];
 
-        currentTetromino.start();
-        currentTetromino.addTetromino();
+            if (softDropping)
+                return Math.max(gravity, softDropGravity);
+            return gravity;
+        }
 
-        holdUsed = false;   //Resets the hold chance
-    }
+        //Returns The Frame Counted Gravity Of The Given Level In Frames Per Row
+        int framesPerRow(int level, boolean softDropping){
+            int framesPerRow = framesPerRowTable[Math.min(level, framesPerRowTable.length-1)];
 
-    //Generates a Tetromino Due To Given Char Type And Returns It.
-    public Tetromino generateTetromino(char type){
-        Tetromino tempTetromino = null;
+            if (softDropping)
+                return Math.min(framesPerRow, softDropFramesPerRow);
+            return framesPerRow;
+        }
 
-        if (type == 'I')
-            tempTetromino = (new I_Piece());
+        //Returns The Frames To Wait Before Spawning The Next Tetromino. Row 0 is the bottom row
+        int entryDelay(int row, boolean linesRemoved){
+            int delay = entryDelayFrames + entryDelayStep * Math.min(4, (row + 2) / 4);
 
-        else if (type == 'J')
-            tempTetromino = (new J_Piece());
+            if (linesRemoved)
+                return delay + lineClearDelayFrames;
+            return delay;
+        }
 
-        else if (type == 'L')
-            tempTetromino = (new L_Piece());
+        //Returns The Score Of Removing The Given Number Of Lines At Once
+        int score(int lines, int level){
+            return lineScores[Math.min(lines, lineScores.length) - 1] * (level+1);
+        }
 
-        else if (type == 'O')
-            tempTetromino = (new O_Piece());
+        static final int[] SCORES = {40, 100, 300, 1200};
+        static final double[] GRAVITY = createGravityTable(30);
 
-        else if (type == 'S')
-            tempTetromino = (new S_Piece());
+        //NES timing. Frame rate of the NES, frames per row of each level, and entry delay of 10 to 18 frames due to the height.
+        //Line clear animation of the NES takes 17 to 20 frames due to its frame counter, 17 frames is used.
+        static final double NES_FRAME_RATE = 60.0988;
+        static final int[] NES_FRAMES_PER_ROW = {48, 43, 38, 33, 28, 23, 18, 13, 8, 6, 5, 5, 5, 4, 4, 4, 3, 3, 3,
+                2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1};
 
-        else if (type == 'T')
-            tempTetromino = (new T_Piece());
+        static final GameMode NEW = new GameMode(0, "new", 0, 0);
+        static final GameMode CLASSIC = new GameMode(1, "classic", false, false, false, false, createGravityTable(NES_FRAMES_PER_ROW), 0.5,
+                0, 0, false, SCORES, 0, 0, NES_FRAME_RATE, NES_FRAMES_PER_ROW, 2, 10, 2, 17);
+        static final GameMode SPRINT = new GameMode(2, "sprint", 40, 0);
+        static final GameMode ULTRA = new GameMode(3, "ultra", 0, (int) (3 * 60 * FRAME_RATE));
+        static final GameMode MARATHON = new GameMode(4, "marathon", 150, 0);
 
-        else if (type == 'Z')
-            tempTetromino = (new Z_Piece());
+        static final GameMode[] MODES = {NEW, CLASSIC, SPRINT, ULTRA, MARATHON};
 
-        if(tempTetromino != null) {
-            tempTetromino.start();
-            tempTetromino.addTetromino();
+        //Returns The Game Mode With The Given Name
+        static GameMode forName(String name){
+            for (GameMode mode : MODES) {
+                if (mode.name.equals(name))
+                    return mode;
+            }
+            throw new IllegalArgumentException("Unknown game mode: " + name);
         }
-        return tempTetromino;
     }
 
-    //Deletes The Given Tetromino.
-    public boolean deleteTetromino(Tetromino tetromino){
-        if(tetromino != null){
-            tetromino.alive = false;
-            tetromino.interrupt();   //Because Tetromino is a Thread, It must be stopped before deleted
-            currentTetromino.clearTetromino();
-        }
-        return true;
-    }
+    public static void main(String[] args) throws IOException {
+        GameMode gameMode = GameMode.forName(args.length > 0 ? args[0] : DEFAULT_GAME_MODE);
 
-    public static void main(String[] args) {
-        new Tetris();
+        //Second argument is the address of the versus server ("host" or "host:port")
+        if (args.length > 1) {
+            String[] address = args[1].split(":");
+            int port = address.length > 1 ? Integer.parseInt(address[1]) : VersusClient.DEFAULT_PORT;
+            new Tetris(gameMode, new VersusClient(new InetSocketAddress(address[0], port)));
+        }
+        else
+            new Tetris(gameMode);
     }
 }
@@ -0,0 +1,253 @@
+//**********************************************************************************************************************************
+// Tournament.java
+//
+// Plays thousands of bot games in one program without window. Every match runs in its own thread and advances its games as
+// fast as possible. Virtual threads are used when the Java version has them, otherwise matches share a thread pool.
+// Bots of the entrants have slightly different weights, so they do not play the same.
+//
+// "versus" -> Single elimination bracket. Two bots play a match with garbage rows. Last player standing wins. If the match
+//             reaches its frame or time limit, the player with more lines (then more score) wins.
+// "solo"   -> Every bot plays the same seeded games alone. Entrants are ranked by their average lines.
+//
+// Usage: java Tournament [versus|solo] [entrants] [game mode] [games per entrant (solo)]
+//**********************************************************************************************************************************
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class Tournament {
+
+    static final int MATCH_FRAME_LIMIT = 18000;   //5 minutes of game time
+    static final long MATCH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);   //Real time limit of a match
+    static final int BOT_MOVE_FRAMES = 10;   //Bots place a Tetromino in every 10 frames
+    static final double WEIGHT_VARIATION = 0.25;   //Weights of the entrants differ up to 25% from the default weights
+
+    final Tetris.GameMode gameMode;
+    final long seed;
+    final ArrayList<Entrant> entrants = new ArrayList<>();
+
+    //A Bot Of The Tournament And Its Results
+    static class Entrant {
+        final int id;
+        final double[] weights;
+        int matches = 0;
+        int wins = 0;
+        long lines = 0;
+        long score = 0;
+
+        Entrant(int id, double[] weights) {
+            this.id = id;
+            this.weights = weights;
+        }
+
+        //Adds The Result Of A Game. Entrants are updated by one thread at a time
+        synchronized void addGame(Tetris game, boolean won){
+            matches++;
+            if (won) wins++;
+            lines += game.getLines();
+            score += game.getScore();
+        }
+
+        synchronized double averageLines(){
+            return matches == 0 ? 0 : (double) lines / matches;
+        }
+    }
+
+    //Garbage Rows Of A Match Played In One Thread. Each Player Sends Its Rows Directly To The Game Of The Opponent
+    static class LocalVersus implements Tetris.Versus {
+        final SplittableRandom random;   //Holes of the garbage rows
+        Tetris opponent;
+        boolean over = false;   //Game of the player is over
+        LocalVersus opponentVersus;
+
+        LocalVersus(long seed) {
+            random = new SplittableRandom(seed);
+        }
+
+        @Override
+        public void join(Tetris.GameMode gameMode) {
+        }
+
+        @Override
+        public boolean poll(Tetris game) {
+            return !over && !opponentVersus.over;
+        }
+
+        @Override
+        public void sendGarbage(int rows) {
+            opponent.receiveGarbage(rows, random.nextInt(Tetris.GARBAGE_HOLES));
+        }
+
+        @Override
+        public void gameOver() {
+            over = true;
+        }
+    }
+
+    public Tournament(Tetris.GameMode gameMode, int entrantCount, long seed) {
+        this.gameMode = gameMode;
+        this.seed = seed;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < entrantCount; i++) {
+            double[] weights = Bot.DEFAULT_WEIGHTS.clone();
+            if (i > 0) {
+                for (int j = 0; j < weights.length; j++)
+                    weights[j] *= 1 + WEIGHT_VARIATION * (2 * random.nextDouble() - 1);
+            }
+            entrants.add(new Entrant(i, weights));
+        }
+    }
+
+    //Returns An Executor That Runs Every Task In A New Virtual Thread. Uses A Thread Pool If Virtual Threads Are Not Available
+    static ExecutorService createExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    //Creates A Game Without Window That Does Not Print Its Events
+    Tetris createGame(long gameSeed){
+        Tetris game = new Tetris(gameMode, gameSeed);
+        game.logEvents = false;
+        return game;
+    }
+
+    //Plays A Match Between Two Entrants. Returns The Winner
+    Entrant playMatch(Entrant first, Entrant second, long matchSeed){
+        Tetris[] games = {createGame(matchSeed), createGame(matchSeed)};
+        Bot[] bots = {new Bot(first.weights), new Bot(second.weights)};
+        LocalVersus[] versus = {new LocalVersus(matchSeed), new LocalVersus(matchSeed + 1)};
+        for (int i = 0; i < 2; i++) {
+            versus[i].opponent = games[1 - i];
+            versus[i].opponentVersus = versus[1 - i];
+            games[i].versus = versus[i];
+        }
+
+        long deadline = System.nanoTime() + MATCH_TIMEOUT_NANOS;
+        for (int frame = 0; frame < MATCH_FRAME_LIMIT && !games[0].gameOver && !games[1].gameOver; frame++) {
+            for (int i = 0; i < 2; i++) {
+                games[i].tick();
+                if (frame % BOT_MOVE_FRAMES == 0)
+                    bots[i].play(games[i]);
+            }
+            if (System.nanoTime() > deadline)
+                break;
+        }
+
+        //Last player standing wins. Otherwise more lines, then more score
+        int winner;
+        if (games[0].gameOver != games[1].gameOver)
+            winner = games[0].gameOver ? 1 : 0;
+        else if (games[0].getLines() != games[1].getLines())
+            winner = games[0].getLines() > games[1].getLines() ? 0 : 1;
+        else
+            winner = games[0].getScore() >= games[1].getScore() ? 0 : 1;
+
+        first.addGame(games[0], winner == 0);
+        second.addGame(games[1], winner == 1);
+        return winner == 0 ? first : second;
+    }
+
+    //Plays One Game Alone
+    void playSolo(Entrant entrant, long gameSeed){
+        Tetris game = createGame(gameSeed);
+        Bot bot = new Bot(entrant.weights);
+
+        long deadline = System.nanoTime() + MATCH_TIMEOUT_NANOS;
+        for (int frame = 0; frame < MATCH_FRAME_LIMIT && !game.gameOver; frame++) {
+            game.tick();
+            if (frame % BOT_MOVE_FRAMES == 0)
+                bot.play(game);
+            if (System.nanoTime() > deadline)
+                break;
+        }
+        entrant.addGame(game, !game.gameOver);
+    }
+
+    //Plays The Bracket Round By Round. Every Match Of A Round Is Played At The Same Time. Returns The Champion
+    Entrant playBracket(ExecutorService executor) throws InterruptedException, ExecutionException {
+        List<Entrant> round = new ArrayList<>(entrants);
+
+        for (int roundNumber = 1; round.size() > 1; roundNumber++) {
+            List<Callable<Entrant>> matches = new ArrayList<>();
+            List<Entrant> next = new ArrayList<>();
+
+            for (int i = 0; i + 1 < round.size(); i += 2) {
+                Entrant first = round.get(i);
+                Entrant second = round.get(i + 1);
+                long matchSeed = seed + roundNumber * 1_000_003L + i;
+                matches.add(() -> playMatch(first, second, matchSeed));
+            }
+            if (round.size() % 2 == 1)
+                next.add(round.get(round.size() - 1));   //Bye
+
+            long start = System.nanoTime();
+            for (Future<Entrant> winner : executor.invokeAll(matches))
+                next.add(winner.get());
+            System.out.printf("Round %d: %d matches in %.1f seconds%n", roundNumber, matches.size(), (System.nanoTime() - start) / 1e9);
+
+            round = next;
+        }
+        return round.get(0);
+    }
+
+    //Plays The Same Seeded Games With Every Entrant
+    void playSolo(ExecutorService executor, int gamesPerEntrant) throws InterruptedException, ExecutionException {
+        List<Callable<Object>> games = new ArrayList<>();
+        for (Entrant entrant : entrants) {
+            for (int i = 0; i < gamesPerEntrant; i++) {
+                long gameSeed = seed + i;
+                games.add(Executors.callable(() -> playSolo(entrant, gameSeed)));
+            }
+        }
+
+        long start = System.nanoTime();
+        for (Future<Object> game : executor.invokeAll(games))
+            game.get();
+        System.out.printf("%d games in %.1f seconds%n", games.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    //Prints The Best Entrants
+    void printStandings(int count){
+        List<Entrant> standings = new ArrayList<>(entrants);
+        standings.sort(Comparator.comparingInt((Entrant e) -> e.wins).thenComparingDouble(Entrant::averageLines).reversed());
+
+        for (int i = 0; i < Math.min(count, standings.size()); i++) {
+            Entrant e = standings.get(i);
+            System.out.printf("%2d. Bot %d: %d wins in %d games, %.1f lines and %d score on average%n",
+                    i + 1, e.id, e.wins, e.matches, e.averageLines(), e.matches == 0 ? 0 : e.score / e.matches);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        String format = args.length > 0 ? args[0] : "versus";
+        int entrantCount = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        Tetris.GameMode gameMode = Tetris.GameMode.forName(args.length > 2 ? args[2] : Tetris.DEFAULT_GAME_MODE);
+        int gamesPerEntrant = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        Tournament tournament = new Tournament(gameMode, entrantCount, System.nanoTime());
+        ExecutorService executor = createExecutor();
+        try {
+            if (format.equals("solo"))
+                tournament.playSolo(executor, gamesPerEntrant);
+            else if (format.equals("versus"))
+                System.out.println("Champion: Bot " + tournament.playBracket(executor).id);
+            else
+                throw new IllegalArgumentException("Unknown tournament format: " + format);
+        } finally {
+            executor.shutdown();
+        }
+        tournament.printStandings(10);
+    }
+}
@@ -0,0 +1,243 @@
+//**********************************************************************************************************************************
+// VecEnv.java
+//
+// Many games advanced at once for reinforcement learning. ("reset(seed)" and "step(actions)" like a gym environment)
+// An action places the current Tetromino: action = rotation * WIDTH + column of its leftmost block. The Tetromino falls from
+// the spawn height in that rotation and column, the full rows are removed and the next Tetromino spawns. Rotations that a
+// shape does not have are wrapped, columns that are too far right are moved left.
+// Rules are the same as Tetris: Same Tetromino generator and bags (the same seed gives the same Tetrominoes), score of the game mode,
+// level in every 10 lines, and the game is over when a block stays in the top rows or the next Tetromino does not fit.
+// A finished game starts again in the same step.
+//
+// Every game is stored in primitive arrays (struct of arrays) and a step does not allocate anything.
+// Observation of a game: HEIGHT row masks (Bit x of a row is the block in column x. Top row first), current and next shape id
+//**********************************************************************************************************************************
+
+import java.util.Arrays;
+
+public class VecEnv {
+
+    static final int WIDTH = 10;
+    static final int HEIGHT = 24;
+    static final int FULL_ROW = (1 << WIDTH) - 1;
+    static final int TOP_ROWS = 5;   //Game is over when a block stays in these rows (Above the play area and its top row)
+    static final int OBSERVATION_SIZE = HEIGHT + 2;
+    static final int ACTION_COUNT = 4 * WIDTH;
+    static final int BAG_SIZE = Tetris.SHAPES.length;
+
+    //Shapes of the rotations. Index of a rotation is shape * 4 + rotation
+    static final int[] ROTATIONS = new int[Tetris.SHAPES.length];   //Rotation count of each shape
+    static final int[] PIECE_ROWS = new int[Tetris.SHAPES.length * 16];   //Row masks of the 4x4 box. Leftmost block is bit 0
+    static final int[] PIECE_LEFT = new int[Tetris.SHAPES.length * 4];   //Column of the leftmost block in the 4x4 box
+    static final int[] PIECE_WIDTH = new int[Tetris.SHAPES.length * 4];
+
+    static {
+        for (Tetris.PieceShape shape : Tetris.SHAPES) {
+            ROTATIONS[shape.id] = shape.cells.length;
+
+            for (int rotation = 0; rotation < 4; rotation++) {
+                int[][] cells = shape.cells[rotation % shape.cells.length];
+                int index = shape.id * 4 + rotation;
+
+                int left = 4, right = 0;
+                for (int[] cell : cells) {
+                    left = Math.min(left, cell[0]);
+                    right = Math.max(right, cell[0]);
+                }
+                for (int[] cell : cells)
+                    PIECE_ROWS[index * 4 + cell[1]] |= 1 << (cell[0] - left);
+                PIECE_LEFT[index] = left;
+                PIECE_WIDTH[index] = right - left + 1;
+            }
+        }
+    }
+
+    final int count;
+    final Tetris.GameMode gameMode;
+
+    //State of the games. Rows of game i are rows[i*HEIGHT] to rows[i*HEIGHT + HEIGHT - 1]
+    final int[] rows;
+    final int[] pieces;
+    final int[] nextPieces;
+    final long[] randomStates;
+    final byte[] bags;   //Tetrominoes of the current bag of each game. Bag of game i is bags[i*BAG_SIZE] to bags[i*BAG_SIZE + BAG_SIZE - 1]
+    final int[] bagPositions;   //Taken Tetrominoes of the current bag
+    final int[] scores;
+    final int[] lines;
+    final int[] steps;
+
+    //Results of the last finished game of each environment
+    final int[] episodeScores;
+    final int[] episodeLines;
+    final int[] episodeSteps;
+
+    public VecEnv(int count, Tetris.GameMode gameMode) {
+        this.count = count;
+        this.gameMode = gameMode;
+        rows = new int[count * HEIGHT];
+        pieces = new int[count];
+        nextPieces = new int[count];
+        randomStates = new long[count];
+        bags = new byte[count * BAG_SIZE];
+        bagPositions = new int[count];
+        scores = new int[count];
+        lines = new int[count];
+        steps = new int[count];
+        episodeScores = new int[count];
+        episodeLines = new int[count];
+        episodeSteps = new int[count];
+    }
+
+    //Starts Every Game Again. Game i Gets The Same Tetrominoes As "new Tetris(gameMode, seed + i)"
+    public void reset(long seed, int[] observations){
+        for (int i = 0; i < count; i++) {
+            randomStates[i] = seed + i;
+            resetGame(i);
+            observe(i, observations);
+        }
+    }
+
+    //Places The Current Tetromino Of Every Game Due To Its Action. Rewards Are The Scores Of The Steps
+    public void step(int[] actions, int[] observations, float[] rewards, boolean[] dones){
+        for (int i = 0; i < count; i++) {
+            int score = scores[i];
+            boolean done = !place(i, actions[i]);
+
+            rewards[i] = scores[i] - score;
+            dones[i] = done;
+            if (done) {
+                episodeScores[i] = scores[i];
+                episodeLines[i] = lines[i];
+                episodeSteps[i] = steps[i];
+                resetGame(i);
+            }
+            observe(i, observations);
+        }
+    }
+
+    //Clears The Game And Spawns Its First Two Tetrominoes. Tetromino generator continues
+    void resetGame(int i){
+        Arrays.fill(rows, i * HEIGHT, i * HEIGHT + HEIGHT, 0);
+        scores[i] = 0;
+        lines[i] = 0;
+        steps[i] = 0;
+        bagPositions[i] = BAG_SIZE;   //Rest of the bag is thrown away like the queue of Tetris
+        pieces[i] = nextShape(i);
+        nextPieces[i] = nextShape(i);
+    }
+
+    //Returns The Next Shape Id Of The Game. Draws a new bag like Tetris.refillQueue() when the bag is empty
+    int nextShape(int i){
+        int base = i * BAG_SIZE;
+        if (bagPositions[i] == BAG_SIZE) {
+            for (int j = 0; j < BAG_SIZE; j++)
+                bags[base + j] = (byte) (gameMode.bag ? j : nextRandom(i, Tetris.SHAPES.length));
+
+            if (gameMode.bag) {
+                for (int j = BAG_SIZE - 1; j > 0; j--) {
+                    int k = nextRandom(i, j + 1);
+                    byte temp = bags[base + j];
+                    bags[base + j] = bags[base + k];
+                    bags[base + k] = temp;
+                }
+            }
+            bagPositions[i] = 0;
+        }
+        return bags[base + bagPositions[i]++];
+    }
+
+    //Returns A Random Number From The Generator Of The Game
+    int nextRandom(int i, int bound){
+        randomStates[i] += Tetris.RANDOM_STEP;
+        return Tetris.randomNumber(randomStates[i], bound);
+    }
+
+    //Writes The Observation Of The Game
+    void observe(int i, int[] observations){
+        int offset = i * OBSERVATION_SIZE;
+        System.arraycopy(rows, i * HEIGHT, observations, offset, HEIGHT);
+        observations[offset + HEIGHT] = pieces[i];
+        observations[offset + HEIGHT + 1] = nextPieces[i];
+    }
+
+    //Checks If The Rotation (shape * 4 + rotation) Fits Into The Column And Row (y coordinate of the 4x4 box) Of The Game
+    boolean fits(int base, int rotation, int column, int y){
+        for (int dy = 0; dy < 4; dy++) {
+            int mask = PIECE_ROWS[rotation * 4 + dy];
+            if (mask == 0)
+                continue;
+
+            int row = y + dy;
+            if (row >= HEIGHT || (rows[base + row] & (mask << column)) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    //Places The Current Tetromino, Removes The Full Rows And Spawns The Next Tetromino. Returns false If The Game Is Over
+    boolean place(int i, int action){
+        int base = i * HEIGHT;
+        int shape = pieces[i];
+        int rotation = shape * 4 + (action / WIDTH) % ROTATIONS[shape];
+        int column = Math.min(action % WIDTH, WIDTH - PIECE_WIDTH[rotation]);
+        steps[i]++;
+
+        int y = Tetris.SPAWN_Y;
+        if (!fits(base, rotation, column, y))
+            return false;
+        while (fits(base, rotation, column, y + 1))
+            y++;
+
+        for (int dy = 0; dy < 4; dy++) {
+            int mask = PIECE_ROWS[rotation * 4 + dy];
+            if (mask != 0)
+                rows[base + y + dy] |= mask << column;
+        }
+
+        removeFullRows(i, y);
+
+        for (int row = 0; row < TOP_ROWS; row++) {
+            if (rows[base + row] != 0)
+                return false;
+        }
+
+        //Next Tetromino spawns in its first rotation
+        pieces[i] = nextPieces[i];
+        nextPieces[i] = nextShape(i);
+        return fits(base, pieces[i] * 4, Tetris.SPAWN_X + PIECE_LEFT[pieces[i] * 4], Tetris.SPAWN_Y);
+    }
+
+    //Removes The Full Rows Of The 4x4 Box At Row y And Adds Their Score. Scored like Tetris.checkStrike(). (Separated full rows
+    //are scored separately, and the level of a score is the level after removing the other rows before its last row)
+    void removeFullRows(int i, int y){
+        int base = i * HEIGHT;
+        int bottom = Math.min(y + 3, HEIGHT - 1);
+        int removed = 0;
+        int strike = 0;
+        int to = bottom;
+
+        for (int row = bottom; row >= y; row--) {
+            if (rows[base + row] == FULL_ROW) {
+                strike++;
+                removed++;
+                continue;
+            }
+            if (strike > 0) {
+                scores[i] += gameMode.score(strike, (lines[i] + removed - 1) / 10);
+                strike = 0;
+            }
+            rows[base + to--] = rows[base + row];
+        }
+        if (strike > 0)
+            scores[i] += gameMode.score(strike, (lines[i] + removed - 1) / 10);
+        if (removed == 0)
+            return;
+
+        //Moves the rows above the box down
+        for (int row = y - 1; row >= 0; row--)
+            rows[base + to--] = rows[base + row];
+        while (to >= 0)
+            rows[base + to--] = 0;
+        lines[i] += removed;
+    }
+}
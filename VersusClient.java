@@ -0,0 +1,238 @@
+//**********************************************************************************************************************************
+// VersusClient.java
+//
+// Connection of a game to the versus server. It never blocks, the game polls it once in every frame.
+//
+// =PROTOCOL=
+// Every message is one type byte followed by a fixed size payload.
+// JOIN       (client) mode id                  Waits for a match of the given game mode
+// START      (server) seed (8 bytes), players  Match started. Every player uses the same seed
+// GARBAGE    (both)   rows, hole (0-255)       Client sends the rows (hole is 0), server passes them to an opponent. Hole
+//                                              is in 1/256 of the board width, so the column is hole * width / 256
+// GAME_OVER  (client) -                        Game of the player is over
+// END        (server) 1 if won, 0 if lost      Match ended
+//
+// Running without an argument plays versus matches with bots and without window:
+// java VersusClient [host] [port] [bots] [game mode] [matches per bot]
+//**********************************************************************************************************************************
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+public class VersusClient implements Tetris.Versus {
+
+    //Message types
+    static final byte JOIN = 1;
+    static final byte START = 2;
+    static final byte GARBAGE = 3;
+    static final byte GAME_OVER = 4;
+    static final byte END = 5;
+    static final int[] PAYLOAD_SIZES = {-1, 1, 9, 2, 0, 1};   //Indexed by message type
+
+    static final int DEFAULT_PORT = 7777;
+    static final int BUFFER_SIZE = 1024;   //Size of the read and write buffers of a connection
+    static final int BOT_MOVE_FRAMES = 30;   //Bots place a Tetromino in every 30 frames
+
+    //States of the client
+    static final int WAITING = 0;   //Joined, waiting for the opponents
+    static final int PLAYING = 1;
+    static final int OUT = 2;   //Game is over, waiting for the end of the match
+    static final int ENDED = 3;   //Not in a match
+
+    final SocketChannel channel;
+    final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    int state = ENDED;
+    int wins = 0;
+    int losses = 0;
+
+    //Connects To The Server
+    public VersusClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+    }
+
+    //Returns The Size Of The Message Of The Given Type Including The Type Byte. Returns -1 For Unknown Types
+    static int messageSize(int type){
+        if (type <= 0 || type >= PAYLOAD_SIZES.length)
+            return -1;
+        return 1 + PAYLOAD_SIZES[type];
+    }
+
+    //Asks The Server For A Match Of The Given Game Mode. Closed connection could not join
+    public void join(Tetris.GameMode gameMode){
+        if (state != ENDED || !reserve(JOIN))
+            return;
+
+        out.put(JOIN).put((byte) gameMode.id);
+        state = WAITING;
+        flush();
+    }
+
+    //Sends Garbage Rows To The Opponents
+    public void sendGarbage(int rows){
+        if (state != PLAYING || !reserve(GARBAGE))
+            return;
+
+        out.put(GARBAGE).put((byte) rows).put((byte) 0);
+        flush();
+    }
+
+    //Tells The Server That The Game Is Over
+    public void gameOver(){
+        if (state != PLAYING || !reserve(GAME_OVER))
+            return;
+
+        out.put(GAME_OVER);
+        state = OUT;
+        flush();
+    }
+
+    //Receives The Messages Of The Server And Applies Them To The Game. Returns true While The Match Is Being Played
+    public boolean poll(Tetris game){
+        if (!channel.isOpen())
+            return false;
+
+        try {
+            if (channel.read(in) == -1)
+                throw new IOException("Server closed the connection");
+
+            in.flip();
+            while (in.hasRemaining()) {
+                int size = messageSize(in.get(in.position()));
+
+                if (size == -1)
+                    throw new IOException("Unknown message: " + in.get(in.position()));
+                if (in.remaining() < size)
+                    break;
+
+                byte type = in.get();
+                if (type == START) {
+                    long seed = in.getLong();
+                    int players = in.get();
+                    state = PLAYING;
+                    System.out.println("Versus match of " + players + " players");
+                    game.startMatch(seed);
+                }
+                else if (type == GARBAGE) {
+                    int rows = in.get();
+                    int hole = in.get() & 0xFF;
+                    if (state == PLAYING)
+                        game.receiveGarbage(rows, hole);
+                }
+                else if (type == END) {
+                    boolean won = in.get() == 1;
+                    state = ENDED;
+                    if (won) wins++;
+                    else losses++;
+                    System.out.println(won ? "YOU WIN" : "YOU LOSE");
+                    if (!game.gameOver)
+                        game.endGame();
+                }
+            }
+            in.compact();
+        } catch (IOException e) {
+            System.out.println("Versus connection is lost: " + e.getMessage());
+            close();
+            if (!game.gameOver)
+                game.endGame();
+        }
+        flush();
+        return state == PLAYING;
+    }
+
+    //Checks If The Message Fits Into The Write Buffer. Connection is closed if the server does not read the messages
+    boolean reserve(byte type){
+        if (!channel.isOpen())
+            return false;
+        if (out.remaining() >= messageSize(type))
+            return true;
+
+        System.out.println("Versus connection is closed: Server does not read the messages");
+        close();
+        return false;
+    }
+
+    //Writes The Buffered Messages. The Rest Is Written By The Next Poll If The Socket Is Full
+    void flush(){
+        if (!channel.isOpen())
+            return;
+
+        try {
+            out.flip();
+            channel.write(out);
+            out.compact();
+        } catch (IOException e) {
+            System.out.println("Versus connection is lost: " + e.getMessage());
+            close();
+        }
+    }
+
+    //Closes The Connection
+    public void close(){
+        state = ENDED;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //Already closed
+        }
+    }
+
+    //Plays Versus Matches With Bots. All Of The Bots Are Played By One Thread Without Window
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int botCount = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        Tetris.GameMode gameMode = Tetris.GameMode.forName(args.length > 3 ? args[3] : Tetris.DEFAULT_GAME_MODE);
+        int matches = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+        Tetris[] games = new Tetris[botCount];
+        VersusClient[] clients = new VersusClient[botCount];
+        Bot[] bots = new Bot[botCount];
+        for (int i = 0; i < botCount; i++) {
+            games[i] = new Tetris(gameMode, 0);
+            clients[i] = new VersusClient(new InetSocketAddress(host, port));
+            games[i].versus = clients[i];
+            bots[i] = new Bot();
+            clients[i].join(gameMode);
+        }
+
+        //Advances every game once in a frame until all the bots played their matches
+        long frameNanos = (long) (1_000_000_000 / gameMode.frameRate);
+        long deadline = System.nanoTime();
+        int running = botCount;
+        for (long frame = 0; running > 0; frame++) {
+            running = 0;
+            for (int i = 0; i < botCount; i++) {
+                VersusClient client = clients[i];
+                if (!client.channel.isOpen())
+                    continue;
+
+                games[i].tick();
+                if (client.state == PLAYING && frame % BOT_MOVE_FRAMES == 0)
+                    bots[i].play(games[i]);
+
+                if (client.state == ENDED) {
+                    if (client.wins + client.losses < matches)
+                        client.join(gameMode);
+                    else
+                        client.close();
+                }
+                if (client.channel.isOpen())
+                    running++;
+            }
+
+            deadline += frameNanos;
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0)
+                Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000));
+        }
+
+        for (int i = 0; i < botCount; i++)
+            System.out.println("Bot " + i + ": " + clients[i].wins + " wins, " + clients[i].losses + " losses");
+    }
+}
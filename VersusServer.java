@@ -0,0 +1,285 @@
+//**********************************************************************************************************************************
+// VersusServer.java
+//
+// Match server of the versus mode. Players who join with the same game mode are put into a match, and the garbage rows
+// sent by a player are passed to the next opponent with a random hole. Last player standing wins the match.
+// Every connection is served by one thread with a selector, so one server could host hundreds of matches.
+// Buffers of the closed connections are reused by the new ones. Protocol is described in VersusClient.
+//
+// Usage: java VersusServer [port] [players per match]
+//**********************************************************************************************************************************
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+public class VersusServer {
+
+    final int playersPerMatch;
+    final Selector selector;
+    final ServerSocketChannel serverChannel;
+    final SplittableRandom random = new SplittableRandom();   //Seeds of the matches and the holes of the garbage rows
+
+    final ArrayList<ArrayDeque<Player>> waiting = new ArrayList<>();   //Players waiting for a match. Indexed by game mode id
+    final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();   //Buffers of the closed connections
+    int matchCount = 0;
+    int playerCount = 0;
+
+    //A Connected Player
+    class Player {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = takeBuffer();
+        final ByteBuffer out = takeBuffer();
+        Match match = null;
+        int index;   //Index in the players of the match
+        boolean alive;
+
+        Player(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+    }
+
+    //Players Of A Match
+    static class Match {
+        final Player[] players;
+        int alive;   //Players whose game is not over
+
+        Match(Player[] players) {
+            this.players = players;
+            alive = players.length;
+        }
+    }
+
+    public VersusServer(int port, int playersPerMatch) throws IOException {
+        this.playersPerMatch = playersPerMatch;
+        for (int i = 0; i < Tetris.GameMode.MODES.length; i++)
+            waiting.add(new ArrayDeque<>());
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    //Serves The Connections Until The Thread Is Interrupted
+    public void run() throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            selector.select();
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                if (!key.isValid())
+                    continue;
+                if (key.isAcceptable())
+                    accept();
+                else {
+                    Player player = (Player) key.attachment();
+                    if (key.isReadable())
+                        read(player);
+                    if (key.isValid() && key.isWritable())
+                        flush(player);
+                }
+            }
+        }
+    }
+
+    //Returns A Buffer From The Pool Or Allocates A New One
+    ByteBuffer takeBuffer(){
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(VersusClient.BUFFER_SIZE);
+    }
+
+    //Accepts The New Connections
+    void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            new Player(channel);
+            playerCount++;
+        }
+    }
+
+    //Reads And Handles The Complete Messages Of The Player
+    void read(Player player){
+        ByteBuffer in = player.in;
+        try {
+            if (player.channel.read(in) == -1) {
+                close(player);
+                return;
+            }
+        } catch (IOException e) {
+            close(player);
+            return;
+        }
+
+        in.flip();
+        while (in.hasRemaining() && player.channel.isOpen()) {
+            int size = VersusClient.messageSize(in.get(in.position()));
+
+            if (size == -1) {
+                close(player);   //Unknown message
+                return;
+            }
+            if (in.remaining() < size)
+                break;
+
+            byte type = in.get();
+            if (type == VersusClient.JOIN)
+                join(player, in.get());
+            else if (type == VersusClient.GARBAGE) {
+                int rows = in.get();
+                in.get();   //Hole is chosen by the server
+                sendGarbage(player, rows);
+            }
+            else if (type == VersusClient.GAME_OVER)
+                gameOver(player);
+            else
+                in.position(in.position() + size - 1);   //Server messages are ignored
+        }
+        if (player.channel.isOpen())
+            in.compact();
+    }
+
+    //Puts The Player Into The Queue Of The Game Mode And Starts A Match When There Are Enough Players
+    void join(Player player, int modeId){
+        if (modeId < 0 || modeId >= waiting.size()) {
+            close(player);
+            return;
+        }
+        if (player.match != null || waiting.get(modeId).contains(player))
+            return;
+
+        ArrayDeque<Player> queue = waiting.get(modeId);
+        queue.add(player);
+        if (queue.size() < playersPerMatch)
+            return;
+
+        Player[] players = new Player[playersPerMatch];
+        Match match = new Match(players);
+        long seed = random.nextLong();
+        for (int i = 0; i < playersPerMatch; i++) {
+            players[i] = queue.poll();
+            players[i].match = match;
+            players[i].index = i;
+            players[i].alive = true;
+        }
+        matchCount++;
+        for (Player p : players) {
+            if (reserve(p, VersusClient.START)) {
+                p.out.put(VersusClient.START).putLong(seed).put((byte) playersPerMatch);
+                flush(p);
+            }
+        }
+    }
+
+    //Sends The Garbage Rows To The Next Opponent Whose Game Is Not Over. Hole is random (Opponent maps it to a column of its board)
+    void sendGarbage(Player player, int rows){
+        Match match = player.match;
+        if (match == null || !player.alive || rows <= 0)
+            return;
+
+        for (int i = 1; i < match.players.length; i++) {
+            Player opponent = match.players[(player.index + i) % match.players.length];
+            if (opponent.alive) {
+                if (reserve(opponent, VersusClient.GARBAGE)) {
+                    opponent.out.put(VersusClient.GARBAGE).put((byte) rows).put((byte) random.nextInt(Tetris.GARBAGE_HOLES));
+                    flush(opponent);
+                }
+                return;
+            }
+        }
+    }
+
+    //Marks The Game Of The Player As Over. Match ends when one player is left
+    void gameOver(Player player){
+        Match match = player.match;
+        if (match == null || !player.alive)
+            return;
+
+        player.alive = false;
+        if (--match.alive > 1)
+            return;
+
+        for (Player p : match.players) {
+            p.match = null;
+            if (p.channel.isOpen() && reserve(p, VersusClient.END)) {
+                p.out.put(VersusClient.END).put((byte) (p.alive ? 1 : 0));
+                flush(p);
+            }
+            p.alive = false;
+        }
+    }
+
+    //Checks If The Message Fits Into The Write Buffer. Players that could not keep up are disconnected
+    boolean reserve(Player player, byte type){
+        if (player.out.remaining() >= VersusClient.messageSize(type))
+            return true;
+
+        close(player);
+        return false;
+    }
+
+    //Writes The Buffered Messages. Waits For The Socket To Be Writable If It Is Full
+    void flush(Player player){
+        ByteBuffer out = player.out;
+        try {
+            out.flip();
+            player.channel.write(out);
+            out.compact();
+        } catch (IOException e) {
+            close(player);
+            return;
+        }
+
+        if (out.position() > 0)
+            player.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        else
+            player.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    //Closes The Connection. Player loses the match and its buffers are reused
+    void close(Player player){
+        if (!player.channel.isOpen())
+            return;
+
+        try {
+            player.channel.close();
+        } catch (IOException e) {
+            //Already closed
+        }
+        playerCount--;
+        for (ArrayDeque<Player> queue : waiting)
+            queue.remove(player);
+        gameOver(player);
+
+        player.in.clear();
+        player.out.clear();
+        bufferPool.add(player.in);
+        bufferPool.add(player.out);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : VersusClient.DEFAULT_PORT;
+        int playersPerMatch = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        VersusServer server = new VersusServer(port, playersPerMatch);
+        System.out.println("Versus server is listening on port " + port);
+        server.run();
+    }
+}
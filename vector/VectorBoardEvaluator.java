@@ -0,0 +1,88 @@
+//**********************************************************************************************************************************
+// VectorBoardEvaluator.java
+//
+// BoardEvaluator that computes the features of many boards at once in the lanes of the Vector API. Each lane is a board,
+// so the boards of a search are evaluated as many at a time as the vector is wide. Rest of the boards use the scalar code.
+// It is in its own directory because it needs the incubator module to compile:
+//
+// javac --add-modules jdk.incubator.vector -d . vector/VectorBoardEvaluator.java
+//**********************************************************************************************************************************
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorBoardEvaluator extends BoardEvaluator {
+
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    final int[] aboveRows = new int[HEIGHT * SPECIES.length()];   //Columns that have a block in or above each row of the lanes
+    final int[] heights = new int[(WIDTH + 2) * SPECIES.length()];   //Column heights of the lanes with the walls at both sides
+
+    @Override
+    public void features(int[] rows, int stride, int count, int[] features){
+        int b = 0;
+        for (; b + SPECIES.length() <= count; b += SPECIES.length())
+            vectorFeatures(rows, stride, b, features);
+        for (; b < count; b++)
+            boardFeatures(rows, stride, b, features);
+    }
+
+    //Computes The Features Of The Boards From b To b + Lane Count
+    void vectorFeatures(int[] rows, int stride, int b, int[] features){
+        IntVector zero = IntVector.zero(SPECIES);
+        IntVector above = zero;
+        IntVector aggregateHeight = zero;
+        IntVector holes = zero;
+        IntVector rowTransitions = zero;
+        int lanes = SPECIES.length();
+
+        for (int row = 0; row < HEIGHT; row++) {
+            IntVector mask = IntVector.fromArray(SPECIES, rows, row * stride + b);
+            above = above.or(mask);
+
+            aggregateHeight = aggregateHeight.add(bitCount(above));
+            holes = holes.add(bitCount(above.and(mask.not())));
+
+            IntVector walled = mask.lanewise(VectorOperators.LSHL, 1).or(1 | (1 << (WIDTH + 1)));
+            rowTransitions = rowTransitions.add(bitCount(walled.lanewise(VectorOperators.XOR, walled.lanewise(VectorOperators.LSHR, 1))
+                    .and((1 << (WIDTH + 1)) - 1)));
+            above.intoArray(aboveRows, row * lanes);
+        }
+
+        //Height of a column is the count of the rows that have a block in the column in or above them
+        IntVector.broadcast(SPECIES, HEIGHT).intoArray(heights, 0);
+        IntVector.broadcast(SPECIES, HEIGHT).intoArray(heights, (WIDTH + 1) * lanes);
+        for (int column = 0; column < WIDTH; column++) {
+            IntVector height = zero;
+            for (int row = 0; row < HEIGHT; row++)
+                height = height.add(IntVector.fromArray(SPECIES, aboveRows, row * lanes).lanewise(VectorOperators.LSHR, column).and(1));
+            height.intoArray(heights, (column + 1) * lanes);
+        }
+
+        IntVector bumpiness = zero;
+        IntVector wells = zero;
+        for (int column = 1; column <= WIDTH; column++) {
+            IntVector left = IntVector.fromArray(SPECIES, heights, (column - 1) * lanes);
+            IntVector height = IntVector.fromArray(SPECIES, heights, column * lanes);
+            IntVector right = IntVector.fromArray(SPECIES, heights, (column + 1) * lanes);
+            wells = wells.add(left.min(right).sub(height).max(0));
+            if (column > 1)
+                bumpiness = bumpiness.add(height.sub(left).abs());
+        }
+
+        aggregateHeight.intoArray(features, AGGREGATE_HEIGHT * stride + b);
+        holes.intoArray(features, HOLES * stride + b);
+        bumpiness.intoArray(features, BUMPINESS * stride + b);
+        wells.intoArray(features, WELLS * stride + b);
+        rowTransitions.intoArray(features, ROW_TRANSITIONS * stride + b);
+    }
+
+    //Counts The Bits Of Every Lane. (Rows have less than 16 bits)
+    static IntVector bitCount(IntVector x){
+        x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(0x5555));
+        x = x.and(0x3333).add(x.lanewise(VectorOperators.LSHR, 2).and(0x3333));
+        x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F);
+        return x.add(x.lanewise(VectorOperators.LSHR, 8)).and(0x1F);
+    }
+}